@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Synthetic documents for the benchmarks. 
+ */
+class BenchmarkData {
+
+    /**
+     * Build a JSON Object with an array of records whose text is roughly the given number of characters. 
+     */
+    static JSONObject json(int size) {
+        JSONArray records = new JSONArray();
+        JSONObject json = new JSONObject();
+        json.put("version", 1);
+        json.put("records", records);
+
+        int length = 0;
+        for (int i = 0; length < size; i++) {
+            JSONObject record = new JSONObject();
+            record.put("id", i);
+            record.put("name", "record-" + i);
+            record.put("enabled", i % 2 == 0);
+            record.put("score", i * 0.5);
+            records.put(record);
+            length += record.toString().length() + 1;
+        }
+        return json;
+    }
+}
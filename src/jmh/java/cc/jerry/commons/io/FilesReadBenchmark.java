@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cc.jerry.commons.io.Files.ValueType;
+
+/**
+ * Reading and parsing JSON files of different sizes from disk. 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilesReadBenchmark {
+
+    @Param({ "1024", "65536", "1048576", "16777216" })
+    public int size;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("bench", ".json");
+        Files.writeFile(BenchmarkData.json(size).toString(), file, Files.Durability.NONE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public String readJSON() {
+        return Files.readJSON(file.getPath(), ValueType.PATH, FilesReadBenchmark.class);
+    }
+
+    @Benchmark
+    public JSONObject parseJSON() {
+        return Files.parseJSON(file.getPath(), ValueType.PATH, FilesReadBenchmark.class);
+    }
+
+    @Benchmark
+    public long streamRecords() throws IOException {
+        try (JSONStream stream = Files.streamJSON(file.getPath(), ValueType.PATH, FilesReadBenchmark.class)) {
+            return stream.forEach("records", record -> { });
+        }
+    }
+}
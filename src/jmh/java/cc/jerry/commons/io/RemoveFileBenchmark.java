@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Deleting synthetic directory trees. A new tree is built before every invocation, so the benchmark runs in 
+ * single-shot mode. 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RemoveFileBenchmark {
+
+    @Param({ "4" })
+    public int depth;
+
+    @Param({ "8" })
+    public int directoriesPerLevel;
+
+    @Param({ "16" })
+    public int filesPerDirectory;
+
+    private Path root;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        root = java.nio.file.Files.createTempDirectory("bench");
+        populate(root, depth);
+    }
+
+    private void populate(Path directory, int level) throws IOException {
+        for (int i = 0; i < filesPerDirectory; i++) {
+            java.nio.file.Files.write(directory.resolve("file" + i), new byte[128]);
+        }
+        if (level == 0)
+            return;
+        for (int i = 0; i < directoriesPerLevel; i++) {
+            Path child = java.nio.file.Files.createDirectory(directory.resolve("dir" + i));
+            populate(child, level - 1);
+        }
+    }
+
+    @Benchmark
+    public void removeFile() {
+        Files.removeFile(new File(root.toString()));
+    }
+
+    @Benchmark
+    public DeleteReport removeTree() {
+        return Files.removeTree(root);
+    }
+}
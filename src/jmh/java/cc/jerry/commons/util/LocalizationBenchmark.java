@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looking up localized Strings from several threads at once. 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalizationBenchmark {
+
+    @Param({ "1000" })
+    public int keys;
+
+    private String[] lookups;
+    private Localization localization;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path folder = Files.createTempDirectory("lang");
+        try (Writer writer = Files.newBufferedWriter(folder.resolve("en-US.lang"), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < keys; i++) {
+                writer.write("key" + i + "=Value number " + i + "\n");
+            }
+            writer.write("count={0} of {1} items\n");
+        }
+        localization = new Localization(folder.toString(), "en-US", "en-US", ".lang");
+        Localization.setDefault(localization);
+
+        // every tenth lookup misses and falls back to the key
+        lookups = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            lookups[i] = i % 10 == 0 ? "missing" + i : "key" + i;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String getSingleThread() {
+        return Localization.get(lookups[ThreadLocalRandom.current().nextInt(lookups.length)]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String getContended() {
+        return Localization.get(lookups[ThreadLocalRandom.current().nextInt(lookups.length)]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String lookupContended() {
+        return localization.lookup(lookups[ThreadLocalRandom.current().nextInt(lookups.length)]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String formatContended() {
+        return localization.lookup("count", ThreadLocalRandom.current().nextInt(1000), keys);
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.json.JSONObject;
+
+import cc.jerry.commons.io.Files.Durability;
+import cc.jerry.commons.io.Files.ValueType;
+
+/**
+ * Non-blocking versions of the {@link Files} operations. Every method returns immediately with a 
+ * {@link CompletableFuture}; network transfers go through {@link HttpClient} and local files through 
+ * {@link AsynchronousFileChannel}, so many operations can be in flight without holding a thread each. The 
+ * few operations that have no asynchronous API in the JDK (classpath resources and tree deletion) run on the 
+ * executor. 
+ */
+public class AsyncFiles {
+
+    /**
+     * The largest file readFile can hold: a byte array, and the String decoded from it, is indexed by an int. 
+     */
+    private static final long MAX_READ_SIZE = Integer.MAX_VALUE - 8;
+
+    private final Executor executor;
+    private final ExecutorService channelExecutor;
+    private final HttpClient client;
+
+    /**
+     * Create an instance that runs callbacks and blocking work on the common fork-join pool. 
+     */
+    public AsyncFiles() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create an instance that runs callbacks and blocking work on the given executor. If it is an 
+     * {@link ExecutorService}, the file channels use it as well. 
+     * 
+     * @param executor the executor for completions and blocking work
+     */
+    public AsyncFiles(Executor executor) {
+        this.executor = executor;
+        this.channelExecutor = executor instanceof ExecutorService ? (ExecutorService) executor : null;
+        this.client = HttpClient.newBuilder()
+                .executor(executor)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Download a file from an URL to the given file. 
+     * 
+     * @param url    an absolute URL of the file
+     * @param target the file to save to, it will be created or replaced
+     * @return a future with the number of bytes written and the time the transfer took
+     */
+    public CompletableFuture<DownloadResult> download(String url, File target) {
+        long start = System.nanoTime();
+        Path path = target.toPath();
+        return client.sendAsync(request(url), info -> {
+            if (info.statusCode() / 100 != 2)
+                return failing(url, info.statusCode());
+            return new FileSubscriber(path);
+        }).thenApply(response -> new DownloadResult(target, response.body(), System.nanoTime() - start));
+    }
+
+    /**
+     * Read the content inside a file containing a JSON Object as UTF-8. 
+     * 
+     * @param value        the value associated with the "type" parameter
+     * @param type         the type of value you entered in the "value" parameter (can be ValueType.PATH, ValueType.CLASSPATH or ValueType.URL)
+     * @param currentClass the class used to load the resource when "type" is ValueType.CLASSPATH
+     * @return a future with a String of a JSON Object
+     */
+    public CompletableFuture<String> readJSON(String value, ValueType type, Class<?> currentClass) {
+        switch (type) {
+        case PATH:
+            return readFile(new File(value).toPath());
+        case URL:
+            return client.sendAsync(request(value), info -> {
+                if (info.statusCode() / 100 != 2)
+                    return failing(value, info.statusCode());
+                return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+            }).thenApply(HttpResponse::body);
+        case CLASSPATH:
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Files.read(value, type, currentClass);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor);
+        default:
+            return failed(new IllegalArgumentException("Unsupported value type: " + type));
+        }
+    }
+
+    /**
+     * Read the content inside a file containing a JSON Object, and parse it. 
+     * 
+     * @param value        the value associated with the "type" parameter
+     * @param type         the type of value you entered in the "value" parameter (can be ValueType.PATH, ValueType.CLASSPATH or ValueType.URL)
+     * @param currentClass the class used to load the resource when "type" is ValueType.CLASSPATH
+     * @return a future with the JSON Object
+     */
+    public CompletableFuture<JSONObject> parseJSON(String value, ValueType type, Class<?> currentClass) {
+        return readJSON(value, type, currentClass).thenApply(JSONObject::new);
+    }
+
+    /**
+     * Fetch a web page and decode it with the charset sent by the server. 
+     * 
+     * @param url an absolute URL of the page
+     * @return a future with the body of the page
+     */
+    public CompletableFuture<String> getHTML(String url) {
+        return client.sendAsync(request(url), info -> {
+            if (info.statusCode() / 100 != 2)
+                return failing(url, info.statusCode());
+            return HttpResponse.BodySubscribers.ofString(HttpCache.charset(info.headers().firstValue("Content-Type").orElse(null)));
+        }).thenApply(HttpResponse::body);
+    }
+
+    /**
+     * Write or replace the content of a file with a String in UTF-8. The content goes to a temporary file next 
+     * to the target first, which then replaces the target in one atomic rename. 
+     * 
+     * @param content    a String
+     * @param file       a file
+     * @param durability how far the data is forced to disk before the future completes
+     * @return a future that completes once the file is in place
+     */
+    public CompletableFuture<Void> writeFile(String content, File file, Durability durability) {
+        Path target = file.toPath().toAbsolutePath();
+        Path tmp = target.resolveSibling("." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        AsynchronousFileChannel channel;
+        try {
+            java.nio.file.Files.createDirectories(target.getParent());
+            channel = open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            return failed(e);
+        }
+
+        return write(channel, StandardCharsets.UTF_8.encode(content), 0).thenApply(written -> {
+            try {
+                try {
+                    if (durability != Durability.NONE)
+                        channel.force(durability == Durability.FSYNC);
+                } finally {
+                    channel.close();
+                }
+                Files.moveAtomically(tmp, target);
+                return (Void) null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((result, failure) -> {
+            if (failure != null) {
+                try {
+                    channel.close();
+                    java.nio.file.Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    failure.addSuppressed(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Delete a file or a directory with everything in it, see {@link Files#removeTree(Path)}. 
+     * 
+     * @param file a file or directory
+     * @return a future with the number of files, directories and bytes removed
+     */
+    public CompletableFuture<DeleteReport> removeFile(File file) {
+        return CompletableFuture.supplyAsync(() -> Files.removeTree(file.toPath()), executor);
+    }
+
+    private static HttpRequest request(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private static <T> HttpResponse.BodySubscriber<T> failing(String url, int status) {
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.discarding(), ignored -> {
+            throw new UncheckedIOException(new IOException("Server returned HTTP " + status + " for " + url));
+        });
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable failure) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+
+    private AsynchronousFileChannel open(Path path, OpenOption... options) throws IOException {
+        Set<OpenOption> set = new HashSet<>();
+        Collections.addAll(set, options);
+        return AsynchronousFileChannel.open(path, set, channelExecutor);
+    }
+
+    private CompletableFuture<String> readFile(Path path) {
+        AsynchronousFileChannel channel;
+        try {
+            channel = open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return failed(e);
+        }
+        ByteBuffer buffer;
+        try {
+            long size = channel.size();
+            if (size > MAX_READ_SIZE)
+                throw new IOException("File too large to read into a String: " + path + " (" + size + " bytes)");
+            buffer = ByteBuffer.allocate((int) size);
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            close(channel);
+            return failed(e);
+        }
+        return read(channel, buffer).whenComplete((result, failure) -> close(channel)).thenApply(full -> {
+            full.flip();
+            return StandardCharsets.UTF_8.decode(full).toString();
+        });
+    }
+
+    private static void close(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // the channel was only read from
+        }
+    }
+
+    /**
+     * Fill the buffer from the channel, starting at the buffer's position, until it is full or the file ends. 
+     */
+    private static CompletableFuture<ByteBuffer> read(AsynchronousFileChannel channel, ByteBuffer buffer) {
+        CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        CompletionHandler<Integer, Void> handler = new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer n, Void attachment) {
+                if (n == -1 || !buffer.hasRemaining())
+                    future.complete(buffer);
+                else
+                    channel.read(buffer, buffer.position(), null, this);
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                future.completeExceptionally(e);
+            }
+        };
+        try {
+            channel.read(buffer, buffer.position(), null, handler);
+        } catch (RuntimeException e) {
+            // the read could not even be started, for example because the executor was shut down
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Write the whole buffer to the channel at the given position. 
+     */
+    static CompletableFuture<Long> write(AsynchronousFileChannel channel, ByteBuffer buffer, long position) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        int length = buffer.remaining();
+        if (length == 0) {
+            future.complete(0L);
+            return future;
+        }
+        channel.write(buffer, position, null, new CompletionHandler<Integer, Void>() {
+            private long written;
+
+            @Override
+            public void completed(Integer n, Void attachment) {
+                written += n;
+                if (buffer.hasRemaining())
+                    channel.write(buffer, position + written, null, this);
+                else
+                    future.complete(written);
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Writes a response body into a file as it arrives. The next chunk is only requested once the previous one 
+     * is on its way to disk, so a slow disk slows the download down instead of filling the heap. 
+     */
+    private class FileSubscriber implements HttpResponse.BodySubscriber<Long> {
+
+        private final Path path;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private AsynchronousFileChannel channel;
+        private Flow.Subscription subscription;
+        private volatile CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+        private volatile long position;
+
+        FileSubscriber(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            try {
+                channel = open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            pending = done;
+            writeAll(buffers, 0, done);
+        }
+
+        private void writeAll(List<ByteBuffer> buffers, int index, CompletableFuture<Void> done) {
+            if (index == buffers.size()) {
+                done.complete(null);
+                subscription.request(1);
+                return;
+            }
+            write(channel, buffers.get(index), position).whenComplete((written, failure) -> {
+                if (failure != null) {
+                    subscription.cancel();
+                    done.completeExceptionally(failure);
+                    onError(failure);
+                } else {
+                    position += written;
+                    writeAll(buffers, index + 1, done);
+                }
+            });
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            close();
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            // the last chunk may still be on its way to disk
+            pending.whenComplete((ignored, failure) -> {
+                if (failure == null) {
+                    close();
+                    result.complete(position);
+                }
+            });
+        }
+
+        private void close() {
+            try {
+                if (channel != null)
+                    channel.close();
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public CompletionStage<Long> getBody() {
+            return result;
+        }
+    }
+}
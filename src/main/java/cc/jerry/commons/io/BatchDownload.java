@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs many downloads at the same time while limiting how many are in flight overall and how many go to the 
+ * same host. Jobs that would exceed a limit wait in a queue without occupying a thread of the executor. 
+ * <p>
+ * An instance can be reused for several batches, the limits apply across all of them. 
+ */
+public class BatchDownload {
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "BatchDownload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Executor executor;
+    private final int maxConcurrent;
+    private final int maxPerHost;
+    private final RateLimiter limiter;
+
+    private final Queue<Task> pending = new ArrayDeque<>();
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private int running;
+
+    /**
+     * Create a scheduler that runs downloads on a shared pool of daemon threads. 
+     * 
+     * @param maxConcurrent the maximum number of downloads in flight at once
+     * @param maxPerHost    the maximum number of downloads in flight to the same host
+     */
+    public BatchDownload(int maxConcurrent, int maxPerHost) {
+        this(DEFAULT_EXECUTOR, maxConcurrent, maxPerHost);
+    }
+
+    /**
+     * Create a scheduler that runs downloads on the given executor. 
+     * 
+     * @param executor      the executor that runs the downloads
+     * @param maxConcurrent the maximum number of downloads in flight at once
+     * @param maxPerHost    the maximum number of downloads in flight to the same host
+     */
+    public BatchDownload(Executor executor, int maxConcurrent, int maxPerHost) {
+        this(executor, maxConcurrent, maxPerHost, null);
+    }
+
+    /**
+     * Create a scheduler that runs downloads on the given executor and caps their combined bandwidth. 
+     * 
+     * @param executor      the executor that runs the downloads
+     * @param maxConcurrent the maximum number of downloads in flight at once
+     * @param maxPerHost    the maximum number of downloads in flight to the same host
+     * @param limiter       the limiter shared by all downloads, or null for no limit
+     */
+    public BatchDownload(Executor executor, int maxConcurrent, int maxPerHost, RateLimiter limiter) {
+        if (maxConcurrent < 1 || maxPerHost < 1)
+            throw new IllegalArgumentException("Concurrency limits must be at least 1: " + maxConcurrent + ", " + maxPerHost);
+        this.executor = executor;
+        this.maxConcurrent = maxConcurrent;
+        this.maxPerHost = maxPerHost;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Download all the given jobs. The returned future completes once every job has either finished or failed, 
+     * a failing job does not stop the others. 
+     * 
+     * @param jobs the downloads to run
+     * @return a future with one report entry per job, in the order of the list
+     */
+    public CompletableFuture<BatchReport> submit(List<DownloadJob> jobs) {
+        long start = System.nanoTime();
+        BatchReport.Entry[] entries = new BatchReport.Entry[jobs.size()];
+        CompletableFuture<BatchReport> report = new CompletableFuture<>();
+        if (jobs.isEmpty()) {
+            report.complete(new BatchReport(new ArrayList<>(), 0));
+            return report;
+        }
+
+        Batch batch = new Batch(entries, report, start);
+        synchronized (this) {
+            for (int i = 0; i < entries.length; i++) {
+                pending.add(new Task(batch, i, jobs.get(i)));
+            }
+        }
+        dispatch();
+        return report;
+    }
+
+    /**
+     * Download a single job, subject to the same limits as the batches. 
+     * 
+     * @param job the download to run
+     * @return a future with the result of the download
+     */
+    public CompletableFuture<DownloadResult> submit(DownloadJob job) {
+        return submit(Arrays.asList(job)).thenCompose(report -> {
+            BatchReport.Entry entry = report.getEntries().get(0);
+            if (entry.isSuccess())
+                return CompletableFuture.completedFuture(entry.getResult());
+            CompletableFuture<DownloadResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(entry.getFailure());
+            return failed;
+        });
+    }
+
+    /**
+     * Start every pending task whose host still has room, as long as the global limit allows. A task the executor 
+     * rejects is recorded as failed and frees its slot for the next pending one, so every batch still completes. 
+     */
+    private void dispatch() {
+        boolean rejected;
+        do {
+            rejected = false;
+            List<Task> ready = new ArrayList<>();
+            synchronized (this) {
+                Iterator<Task> it = pending.iterator();
+                while (running < maxConcurrent && it.hasNext()) {
+                    Task task = it.next();
+                    int perHost = runningPerHost.getOrDefault(task.host, 0);
+                    if (perHost < maxPerHost) {
+                        it.remove();
+                        runningPerHost.put(task.host, perHost + 1);
+                        running++;
+                        ready.add(task);
+                    }
+                }
+            }
+            for (Task task : ready) {
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    finished(task);
+                    task.batch.complete(task.index, new BatchReport.Entry(task.job, null, e));
+                    rejected = true;
+                }
+            }
+        } while (rejected);
+    }
+
+    private synchronized void finished(Task task) {
+        running--;
+        int perHost = runningPerHost.get(task.host) - 1;
+        if (perHost == 0)
+            runningPerHost.remove(task.host);
+        else
+            runningPerHost.put(task.host, perHost);
+    }
+
+    private static String host(String url) {
+        try {
+            String host = new URL(url).getHost();
+            return host == null ? "" : host.toLowerCase();
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+
+    private static class Batch {
+
+        final BatchReport.Entry[] entries;
+        final CompletableFuture<BatchReport> report;
+        final long start;
+        int remaining;
+
+        Batch(BatchReport.Entry[] entries, CompletableFuture<BatchReport> report, long start) {
+            this.entries = entries;
+            this.report = report;
+            this.start = start;
+            this.remaining = entries.length;
+        }
+
+        void complete(int index, BatchReport.Entry entry) {
+            boolean done;
+            synchronized (this) {
+                entries[index] = entry;
+                done = --remaining == 0;
+            }
+            if (done)
+                report.complete(new BatchReport(new ArrayList<>(Arrays.asList(entries)), System.nanoTime() - start));
+        }
+    }
+
+    private class Task implements Runnable {
+
+        final Batch batch;
+        final int index;
+        final DownloadJob job;
+        final String host;
+
+        Task(Batch batch, int index, DownloadJob job) {
+            this.batch = batch;
+            this.index = index;
+            this.job = job;
+            this.host = host(job.getUrl());
+        }
+
+        @Override
+        public void run() {
+            BatchReport.Entry entry;
+            try {
+                entry = new BatchReport.Entry(job, Files.download(job.getUrl(), job.getTarget(), null, limiter), null);
+            } catch (Throwable e) {
+                entry = new BatchReport.Entry(job, null, e);
+            }
+            finished(this);
+            batch.complete(index, entry);
+            dispatch();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a {@link BatchDownload}: one entry per job, in the order the jobs were submitted. 
+ */
+public class BatchReport {
+
+    private final List<Entry> entries;
+    private final long elapsedNanos;
+
+    BatchReport(List<Entry> entries, long elapsedNanos) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return every job with its result, in submission order
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the entries of the jobs that completed successfully
+     */
+    public List<Entry> getSucceeded() {
+        List<Entry> list = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.isSuccess())
+                list.add(entry);
+        }
+        return list;
+    }
+
+    /**
+     * @return the entries of the jobs that failed
+     */
+    public List<Entry> getFailed() {
+        List<Entry> list = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (!entry.isSuccess())
+                list.add(entry);
+        }
+        return list;
+    }
+
+    /**
+     * @return the total number of bytes written by all successful jobs
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (Entry entry : entries) {
+            if (entry.isSuccess())
+                bytes += entry.getResult().getBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the time from submitting the batch until the last job finished, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return entries.size() + " jobs, " + getFailed().size() + " failed, " + getBytes() + " bytes in " + elapsedNanos / 1_000_000L + " ms";
+    }
+
+    /**
+     * A job together with its result, or the exception that made it fail. 
+     */
+    public static class Entry {
+
+        private final DownloadJob job;
+        private final DownloadResult result;
+        private final Throwable failure;
+
+        Entry(DownloadJob job, DownloadResult result, Throwable failure) {
+            this.job = job;
+            this.result = result;
+            this.failure = failure;
+        }
+
+        public DownloadJob getJob() {
+            return job;
+        }
+
+        /**
+         * @return the result of the download, or null if it failed
+         */
+        public DownloadResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return the exception that made the download fail, or null if it succeeded
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        public boolean isSuccess() {
+            return failure == null;
+        }
+    }
+}
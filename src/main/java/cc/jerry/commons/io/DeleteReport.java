@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of {@link Files#removeTree(Path)}: how much was deleted, what could not be deleted and how long 
+ * it took. 
+ */
+public class DeleteReport {
+
+    private final long files;
+    private final long directories;
+    private final long bytes;
+    private final Map<Path, IOException> failures;
+    private final long elapsedNanos;
+
+    DeleteReport(long files, long directories, long bytes, Map<Path, IOException> failures, long elapsedNanos) {
+        this.files = files;
+        this.directories = directories;
+        this.bytes = bytes;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the number of files and links deleted
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * @return the number of directories deleted
+     */
+    public long getDirectories() {
+        return directories;
+    }
+
+    /**
+     * @return the total size of the deleted files
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the paths that could not be listed or deleted, with the reason
+     */
+    public Map<Path, IOException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return true if everything was deleted
+     */
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @return the time the deletion took, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return files + " files, " + directories + " directories, " + bytes + " bytes removed, " + failures.size()
+                + " failures in " + elapsedNanos / 1_000_000L + " ms";
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A persistent cache for downloads of URLs whose content does not change, such as versioned artifacts. The first 
+ * request for an URL downloads it into the cache, and later requests, also from later processes, are served from 
+ * disk without contacting the server. 
+ * <p>
+ * Downloads are stored once per content in "objects/&lt;sha256&gt;", so URLs serving identical files share a 
+ * copy. The URLs, the hash of their content and the time they were last used are kept in a small binary 
+ * "index" file. A cached file is copied to the target with {@link FileChannel#transferTo}, so the target can be 
+ * modified or replaced without affecting the cache. When the stored files take more than the configured size, the 
+ * least recently used URLs are dropped and their files deleted. An index that cannot be read is discarded and the 
+ * cache starts empty. 
+ * <p>
+ * Cache hits only update the index in memory; it is written when a download is added, at most every 
+ * {@link #FLUSH_INTERVAL_MILLIS} on hits, and by {@link #flush()} or {@link #close()}. 
+ */
+public class DownloadCache implements Closeable {
+
+    /**
+     * The longest time a cache hit stays unrecorded in the index file. 
+     */
+    public static final long FLUSH_INTERVAL_MILLIS = 30_000;
+
+    private static final int INDEX_MAGIC = 0x4A444332; // "JDC2"
+
+    /**
+     * URLs longer than this in the index mean it is damaged. 
+     */
+    private static final int MAX_URL_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final Path objects;
+    private final Path index;
+    private final long maxBytes;
+
+    /**
+     * URL to entry, in access order. 
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private boolean dirty;
+    private long savedAt = System.currentTimeMillis();
+
+    /**
+     * Open the cache in the given directory, which is created if it doesn't exist. 
+     * 
+     * @param directory the directory the downloads and the index are stored in
+     * @param maxBytes  the maximum total size of the stored files
+     * @throws IOException if the directory cannot be created or the index cannot be read
+     */
+    public DownloadCache(File directory, long maxBytes) throws IOException {
+        if (maxBytes < 1)
+            throw new IllegalArgumentException("Cache size must be at least 1: " + maxBytes);
+        this.directory = directory.toPath();
+        this.objects = this.directory.resolve("objects");
+        this.index = this.directory.resolve("index");
+        this.maxBytes = maxBytes;
+        java.nio.file.Files.createDirectories(objects);
+        load();
+    }
+
+    /**
+     * Save the content of an URL to the given file, downloading it only if it is not cached yet. 
+     * 
+     * @param url    an absolute URL of the file
+     * @param target the file to save to, it will be created or replaced
+     * @return the file and its size, with the time it took to download or to serve from the cache
+     * @throws IOException if the download or the write fails
+     */
+    public DownloadResult fetch(String url, File target) throws IOException {
+        long start = System.nanoTime();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(url);
+        }
+        if (entry != null) {
+            try {
+                serve(entry, target.toPath());
+                hits.increment();
+                long now = System.currentTimeMillis();
+                synchronized (this) {
+                    entry.lastUsed = now;
+                    dirty = true;
+                    if (now - savedAt >= FLUSH_INTERVAL_MILLIS)
+                        save();
+                }
+                return new DownloadResult(target, entry.size, System.nanoTime() - start);
+            } catch (NoSuchFileException e) {
+                // deleted behind our back, download again
+                synchronized (this) {
+                    entries.remove(url, entry);
+                }
+            }
+        }
+
+        Path tmp = java.nio.file.Files.createTempFile(directory, "download", ".tmp");
+        try {
+            Files.download(url, tmp.toFile());
+            String hash = Files.sha256(tmp);
+            Path object = objects.resolve(hash);
+            if (java.nio.file.Files.exists(object))
+                java.nio.file.Files.delete(tmp);
+            else
+                Files.moveAtomically(tmp, object);
+            entry = new Entry(hash, java.nio.file.Files.size(object), System.currentTimeMillis());
+        } finally {
+            java.nio.file.Files.deleteIfExists(tmp);
+        }
+        misses.increment();
+
+        serve(entry, target.toPath());
+        synchronized (this) {
+            entries.put(url, entry);
+            evict();
+            save();
+        }
+        return new DownloadResult(target, entry.size, System.nanoTime() - start);
+    }
+
+    /**
+     * Write the index file if cache hits changed it since it was last written. 
+     * 
+     * @throws IOException if the index cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (dirty)
+            save();
+    }
+
+    /**
+     * Write the index file, see {@link #flush()}. The cache can still be used afterwards. 
+     * 
+     * @throws IOException if the index cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * @return the number of requests served from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of requests that had to download
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the total size of the stored files
+     */
+    public synchronized long getSize() {
+        long total = 0;
+        for (Entry entry : unique().values())
+            total += entry.size;
+        return total;
+    }
+
+    private void serve(Entry entry, Path target) throws IOException {
+        Path object = objects.resolve(entry.hash);
+        java.nio.file.Files.deleteIfExists(target);
+        try (FileChannel in = FileChannel.open(object, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    /**
+     * Drop the least recently used URLs until the stored files fit in the configured size, deleting the files 
+     * no URL refers to anymore. 
+     */
+    private void evict() {
+        Map<String, Entry> unique = unique();
+        long total = 0;
+        for (Entry entry : unique.values())
+            total += entry.size;
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (total > maxBytes && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            it.remove();
+            if (!referenced(entry.hash)) {
+                total -= entry.size;
+                try {
+                    java.nio.file.Files.deleteIfExists(objects.resolve(entry.hash));
+                } catch (IOException e) {
+                    // left for the next eviction
+                }
+            }
+        }
+    }
+
+    private boolean referenced(String hash) {
+        for (Entry entry : entries.values()) {
+            if (entry.hash.equals(hash))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Return one entry per stored file. 
+     */
+    private Map<String, Entry> unique() {
+        Map<String, Entry> unique = new HashMap<>();
+        for (Entry entry : entries.values())
+            unique.putIfAbsent(entry.hash, entry);
+        return unique;
+    }
+
+    private void load() throws IOException {
+        if (!java.nio.file.Files.isRegularFile(index))
+            return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(java.nio.file.Files.newInputStream(index)))) {
+            if (!read(in))
+                // written by another version or damaged, start over
+                Logger.getLogger(DownloadCache.class.getName()).warning("Discarding unreadable cache index " + index);
+        } catch (EOFException e) {
+            Logger.getLogger(DownloadCache.class.getName()).log(Level.WARNING, "Discarding truncated cache index " + index, e);
+        }
+    }
+
+    /**
+     * Read the entries of the index, adding them only if the whole index is valid. 
+     * 
+     * @return false if the index is not in this version's format or its lengths are impossible
+     */
+    private boolean read(DataInputStream in) throws IOException {
+        if (in.readInt() != INDEX_MAGIC)
+            return false;
+        int count = in.readInt();
+        if (count < 0)
+            return false;
+        List<Map.Entry<String, Entry>> loaded = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_URL_BYTES)
+                return false;
+            byte[] url = new byte[length];
+            in.readFully(url);
+            byte[] hash = new byte[32];
+            in.readFully(hash);
+            loaded.add(new AbstractMap.SimpleImmutableEntry<>(new String(url, StandardCharsets.UTF_8),
+                    new Entry(Files.hex(hash), in.readLong(), in.readLong())));
+        }
+
+        // insert from the least to the most recently used to restore the access order
+        loaded.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+        for (Map.Entry<String, Entry> e : loaded) {
+            if (java.nio.file.Files.isRegularFile(objects.resolve(e.getValue().hash)))
+                entries.put(e.getKey(), e.getValue());
+        }
+        return true;
+    }
+
+    private void save() throws IOException {
+        Path tmp = java.nio.file.Files.createTempFile(directory, "index", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(java.nio.file.Files.newOutputStream(tmp)))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    // length-prefixed instead of writeUTF, which is limited to 64 KB
+                    byte[] url = e.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(url.length);
+                    out.write(url);
+                    out.write(unhex(e.getValue().hash));
+                    out.writeLong(e.getValue().size);
+                    out.writeLong(e.getValue().lastUsed);
+                }
+            }
+            Files.moveAtomically(tmp, index);
+            dirty = false;
+            savedAt = System.currentTimeMillis();
+        } finally {
+            java.nio.file.Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static byte[] unhex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        return bytes;
+    }
+
+    private static class Entry {
+
+        final String hash;
+        final long size;
+        long lastUsed;
+
+        Entry(String hash, long size, long lastUsed) {
+            this.hash = hash;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.File;
+
+/**
+ * A single download in a {@link BatchDownload}: an absolute URL and the file it is saved to. 
+ */
+public class DownloadJob {
+
+    private final String url;
+    private final File target;
+
+    public DownloadJob(String url, File target) {
+        this.url = url;
+        this.target = target;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public File getTarget() {
+        return target;
+    }
+
+    @Override
+    public String toString() {
+        return url + " -> " + target;
+    }
+}
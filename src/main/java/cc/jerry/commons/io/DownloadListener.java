@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.IOException;
+
+/**
+ * Receives the progress of a download. Progress is reported at most every {@link #PROGRESS_INTERVAL_MILLIS} 
+ * milliseconds, and once more when the transfer ends. The methods are called on the downloading thread (one of 
+ * them, for ranged downloads), so they should return quickly. 
+ */
+public interface DownloadListener {
+
+    /**
+     * The minimum time between two progress reports. 
+     */
+    long PROGRESS_INTERVAL_MILLIS = 100;
+
+    /**
+     * Called while the download is running. 
+     * 
+     * @param bytes       the number of bytes received so far
+     * @param total       the size of the file, or -1 if the server didn't send it
+     * @param currentRate the rate since the previous report, in bytes per second
+     * @param averageRate the rate since the start of the download, in bytes per second
+     */
+    void onProgress(long bytes, long total, double currentRate, double averageRate);
+
+    /**
+     * Called once the download has finished successfully. 
+     * 
+     * @param result the size of the file and the time the transfer took
+     */
+    default void onComplete(DownloadResult result) {
+    }
+
+    /**
+     * Called if the download fails, before the exception is thrown to the caller. 
+     * 
+     * @param e the reason of the failure
+     */
+    default void onFailure(IOException e) {
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.File;
+
+/**
+ * The outcome of a finished download: where the file was saved, how many bytes were written to disk and how long 
+ * the transfer took. 
+ */
+public class DownloadResult {
+
+    private final File file;
+    private final long bytes;
+    private final long elapsedNanos;
+
+    public DownloadResult(File file, long bytes, long elapsedNanos) {
+        this.file = file;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the file the download was saved to
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of bytes written to disk
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the time the transfer took, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the time the transfer took, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+
+    /**
+     * Returns the average throughput of the transfer in bytes per second, or 0 if no time was measured. 
+     * 
+     * @return the average throughput in bytes per second
+     */
+    public double getBytesPerSecond() {
+        if (elapsedNanos <= 0)
+            return 0;
+        return bytes * 1_000_000_000d / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return file + ": " + bytes + " bytes in " + getElapsedMillis() + " ms (" + (long) getBytesPerSecond() + " B/s)";
+    }
+}
@@ -16,22 +16,44 @@
 
 package cc.jerry.commons.io;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.DataInputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -40,6 +62,11 @@ import org.w3c.dom.NodeList;
 
 public class Files {
 
+    /**
+     * Size of the buffer used when streaming a download to disk. 
+     */
+    static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
     /**
      * Download a file from an URL (for example "http://example.com/file.txt") 
      * to a directory, and keep the same filename. 
@@ -48,23 +75,8 @@ public class Files {
      * @param directory a directory, must include "/" at the end. 
      */
     public void downloadFile(String url, String directory){
-        URL fileURL;
-        URLConnection downloadCon;
-        DataInputStream downloadDIS; 
-        FileOutputStream downloadFOS; 
-        byte[] fileData;  
         try {
-            fileURL = new URL(url); //File Location goes here
-            downloadCon = fileURL.openConnection(); // open the url connection.
-            downloadDIS = new DataInputStream(downloadCon.getInputStream());
-            fileData = new byte[downloadCon.getContentLength()]; 
-            for (int q = 0; q < fileData.length; q++) { 
-                fileData[q] = downloadDIS.readByte();
-            }
-            downloadDIS.close(); // close the data input stream
-            downloadFOS = new FileOutputStream(new File(directory + fileURL.getFile())); //FILE Save Location goes here
-            downloadFOS.write(fileData);  // write out the file we want to save.
-            downloadFOS.close(); // close the output stream writer
+            download(url, new File(directory + new URL(url).getFile()));
         }
         catch(IOException m) {
             System.out.println("Failed to download file (please check your internet connection)");
@@ -81,30 +93,265 @@ public class Files {
      * @param filename  a filename, must include file type (for example "file.txt")
      */
     public void downloadFile(String url, String directory, String filename){
-        URL fileURL;
-        URLConnection downloadCon;
-        DataInputStream downloadDIS; 
-        FileOutputStream downloadFOS; 
-        byte[] fileData;  
         try {
-            fileURL = new URL(url); //File Location goes here
-            downloadCon = fileURL.openConnection(); // open the url connection.
-            downloadDIS = new DataInputStream(downloadCon.getInputStream());
-            fileData = new byte[downloadCon.getContentLength()]; 
-            for (int q = 0; q < fileData.length; q++) { 
-                fileData[q] = downloadDIS.readByte();
-            }
-            downloadDIS.close(); // close the data input stream
-            downloadFOS = new FileOutputStream(new File(directory + filename)); //FILE Save Location goes here
-            downloadFOS.write(fileData);  // write out the file we want to save.
-            downloadFOS.close(); // close the output stream writer
+            download(url, new File(directory + filename));
         }
         catch(IOException m) {
             System.out.println("Failed to download file (please check your internet connection)");
             System.out.println(m);
         }
-        
-        
+    }
+    
+    /**
+     * Download a file from an URL (for example "http://example.com/file.txt") to the given file. The response is 
+     * streamed to disk through a fixed-size buffer as it arrives, so memory use does not depend on the size of 
+     * the file, and servers that don't send a content length are supported. 
+     * 
+     * @param url    an absolute URL of the file
+     * @param target the file to save to, it will be created or replaced
+     * @return the number of bytes written and the time the transfer took
+     * @throws IOException if the connection or the write fails
+     */
+    public static DownloadResult download(String url, File target) throws IOException {
+        return download(url, target, null, null);
+    }
+    
+    /**
+     * Download a file from an URL to the given file, reporting progress to a listener and capping the bandwidth 
+     * with a rate limiter. Sharing one limiter between several downloads caps their combined bandwidth. 
+     * 
+     * @param url      an absolute URL of the file
+     * @param target   the file to save to, it will be created or replaced
+     * @param listener receives progress, completion and failure, or null
+     * @param limiter  caps the bandwidth of the download, or null for no limit
+     * @return the number of bytes written and the time the transfer took
+     * @throws IOException if the connection or the write fails
+     */
+    public static DownloadResult download(String url, File target, DownloadListener listener, RateLimiter limiter) throws IOException {
+        long start = System.nanoTime();
+        TransferProgress progress = new TransferProgress(listener, limiter);
+        IOMetrics.Probe probe = IOMetrics.start(IOMetrics.Operation.DOWNLOAD, ValueType.URL, url);
+        try {
+            long written = receive(new URL(url).openConnection(), target.toPath(), progress);
+            progress.finish();
+            DownloadResult result = new DownloadResult(target, written, System.nanoTime() - start);
+            probe.end(written);
+            if (listener != null)
+                listener.onComplete(result);
+            return result;
+        } catch (IOException e) {
+            probe.fail();
+            if (listener != null)
+                listener.onFailure(e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Download a file from an URL to the given file through a download cache, so that an URL already downloaded 
+     * into the cache, possibly by an earlier process, is served from disk. 
+     * 
+     * @param url    an absolute URL of the file
+     * @param target the file to save to, it will be created or replaced
+     * @param cache  the cache to look the URL up in and store the download to
+     * @return the number of bytes written and the time the transfer took
+     * @throws IOException if the download or the write fails
+     */
+    public static DownloadResult download(String url, File target, DownloadCache cache) throws IOException {
+        return cache.fetch(url, target);
+    }
+    
+    /**
+     * Download a file from an URL to the given file over several connections at once. The file is split into 
+     * byte ranges that are fetched at the same time with HTTP "Range" requests and written at their offsets in 
+     * the preallocated target. If the server does not support ranges, the file is downloaded over a single stream. 
+     * 
+     * @param url         an absolute URL of the file
+     * @param target      the file to save to, it will be created or replaced
+     * @param connections the maximum number of connections to open, must be at least 1
+     * @return the number of bytes written and the time the transfer took
+     * @throws IOException if any of the connections or writes fails
+     */
+    public static DownloadResult download(String url, File target, int connections) throws IOException {
+        return download(url, target, connections, null, null);
+    }
+    
+    /**
+     * Download a file from an URL to the given file over several connections at once, see 
+     * {@link #download(String, File, int)}, reporting progress to a listener and capping the combined bandwidth 
+     * of all connections with a rate limiter. 
+     * 
+     * @param url         an absolute URL of the file
+     * @param target      the file to save to, it will be created or replaced
+     * @param connections the maximum number of connections to open, must be at least 1
+     * @param listener    receives progress, completion and failure, or null
+     * @param limiter     caps the bandwidth of the download, or null for no limit
+     * @return the number of bytes written and the time the transfer took
+     * @throws IOException if any of the connections or writes fails
+     */
+    public static DownloadResult download(String url, File target, int connections, DownloadListener listener, RateLimiter limiter) throws IOException {
+        return new RangedDownload(new URL(url), target, connections, listener, limiter).run();
+    }
+    
+    /**
+     * Download a file from an URL to the given file so that an interrupted download can be continued. The data 
+     * is written to "&lt;target&gt;.part" with a small ".part.meta" sidecar, and a later call with the same URL and 
+     * target resumes from the last offset known to be on disk. When the download is complete, the file is 
+     * checked against the expected size and SHA-256 and then moved to the target. 
+     * 
+     * @param url          an absolute URL of the file
+     * @param target       the file to save to, it will be replaced once the download is complete and verified
+     * @param expectedSize the expected size in bytes, or -1 to only check against the length sent by the server
+     * @param sha256       the expected SHA-256 of the file in hexadecimal, or null to skip the check
+     * @return the size of the file and the time this call took
+     * @throws IOException if the transfer fails, or if the file doesn't match the expected size or checksum
+     */
+    public static DownloadResult downloadResumable(String url, File target, long expectedSize, String sha256) throws IOException {
+        return new ResumableDownload(new URL(url), target, expectedSize, sha256).run();
+    }
+    
+    /**
+     * Download a file from an URL to the given file so that an interrupted download can be continued, see 
+     * {@link #downloadResumable(String, File, long, String)}. 
+     * 
+     * @param url    an absolute URL of the file
+     * @param target the file to save to
+     * @return the size of the file and the time this call took
+     * @throws IOException if the transfer fails or the size doesn't match the length sent by the server
+     */
+    public static DownloadResult downloadResumable(String url, File target) throws IOException {
+        return downloadResumable(url, target, -1, null);
+    }
+    
+    /**
+     * Download many files at the same time. At most "maxConcurrent" downloads run at once, and at most 
+     * "maxPerHost" of them go to the same host. Use {@link BatchDownload} directly to supply an executor or to 
+     * share the limits between several batches. 
+     * 
+     * @param jobs          the URLs and the files to save them to
+     * @param maxConcurrent the maximum number of downloads in flight at once
+     * @param maxPerHost    the maximum number of downloads in flight to the same host
+     * @return a future with one result per job, in the order of the list
+     */
+    public static CompletableFuture<BatchReport> downloadAll(List<DownloadJob> jobs, int maxConcurrent, int maxPerHost) {
+        return new BatchDownload(maxConcurrent, maxPerHost).submit(jobs);
+    }
+    
+    /**
+     * Copy everything from a stream into a channel starting at the given position, using a fixed-size buffer. 
+     * 
+     * @return the number of bytes written
+     */
+    static long transfer(InputStream in, FileChannel out, long position) throws IOException {
+        return transfer(in, out, position, null);
+    }
+    
+    /**
+     * Copy everything from a stream into a channel starting at the given position, using a fixed-size buffer, 
+     * and count every chunk against the progress if there is one. 
+     * 
+     * @return the number of bytes written
+     */
+    static long transfer(InputStream in, FileChannel out, long position, TransferProgress progress) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(in);
+        ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+        long written = 0;
+        int n;
+        while ((n = source.read(buffer)) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += out.write(buffer, position + written);
+            }
+            buffer.clear();
+            if (progress != null) {
+                progress.add(n);
+                progress.acquire(n);
+            }
+        }
+        return written;
+    }
+    
+    /**
+     * Stream the body of a response to a temporary file next to the target and move it into place once it is 
+     * complete, so that a failed or cut-off download never replaces an existing file. A body shorter than the 
+     * declared content length is an error. 
+     */
+    static long receive(URLConnection con, Path target, TransferProgress progress) throws IOException {
+        Path path = target.toAbsolutePath();
+        Path tmp = tempSibling(path);
+        try {
+            long length, written;
+            try (InputStream in = con.getInputStream();
+                 FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                length = con.getContentLengthLong();
+                progress.setTotal(length);
+                written = transfer(in, out, 0, progress);
+            }
+            if (length >= 0 && written != length)
+                throw new IOException("Incomplete download of " + con.getURL() + ": expected " + length + " bytes, got " + written);
+            moveAtomically(tmp, path);
+            return written;
+        } catch (IOException | RuntimeException e) {
+            java.nio.file.Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+    
+    /**
+     * Return an unused name in the directory of the given file for writing its new content before it is moved 
+     * into place. 
+     */
+    static Path tempSibling(Path target) {
+        // not createTempFile, which would leave the target readable by the owner only
+        return target.resolveSibling("." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+    }
+    
+    /**
+     * Move a file to its final name, replacing an existing file, atomically where the file system supports it so 
+     * that readers see either the old or the new file. 
+     * 
+     * @param source the file to move
+     * @param target the final name of the file
+     * @throws IOException if the file cannot be moved
+     */
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            java.nio.file.Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            java.nio.file.Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Return the SHA-256 of a file as lowercase hex. 
+     */
+    static String sha256(Path path) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return hex(digest.digest());
+    }
+    
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
     }
     
     public enum ValueType {
@@ -117,47 +364,73 @@ public class Files {
      * @param value        the value associated with the "type" parameter
      * @param type         the type of value you entered in the "value" parameter (can be ValueType.PATH, ValueType.CLASSPATH, ValueType.URL or ValueType.FILE)
      * @param currentClass the class used to call this method, only for use when require static
-     * @return a String of a JSON Object
+     * @return a String of a JSON Object, or null if the source cannot be read
      */
 	public static String readJSON(String value, ValueType type, Class<?> currentClass) {
-    	String returnValue = null;
+    	try {
+    		return read(value, type, currentClass);
+    	} catch (IOException e) {
+    		Logger.getLogger(Files.class.getName()).log(Level.SEVERE, "Cannot read " + value, e);
+    		return null;
+    	}
+    }
+    
+    /**
+     * Read the content inside a file containing a JSON Object, and return the JSON Object as a String. URL sources 
+     * are fetched through the given HTTP cache, so an unchanged document is served from disk. 
+     * 
+     * @param value        the value associated with the "type" parameter
+     * @param type         the type of value you entered in the "value" parameter (can be ValueType.PATH, ValueType.CLASSPATH, ValueType.URL or ValueType.FILE)
+     * @param currentClass the class used to call this method, only for use when require static
+     * @param cache        the cache used for ValueType.URL
+     * @return a String of a JSON Object, or null if the source cannot be read
+     */
+    public static String readJSON(String value, ValueType type, Class<?> currentClass, HttpCache cache) {
+    	if (type != ValueType.URL)
+    		return readJSON(value, type, currentClass);
+    	try {
+    		return cache.getString(value);
+    	} catch (IOException e) {
+    		Logger.getLogger(Files.class.getName()).log(Level.SEVERE, "Cannot read " + value, e);
+    		return null;
+    	}
+    }
+    
+    /**
+     * Read the whole content of a PATH, URL or CLASSPATH source as UTF-8. 
+     * 
+     * @return the content, or null if the type is not supported
+     */
+    static String read(String value, ValueType type, Class<?> currentClass) throws IOException {
+    	IOMetrics.Probe probe = IOMetrics.start(IOMetrics.Operation.READ, type, value);
+    	try {
+    		String content = readSource(value, type, currentClass);
+    		probe.end(content == null ? 0 : content.length());
+    		return content;
+    	} catch (IOException | RuntimeException e) {
+    		probe.fail();
+    		throw e;
+    	}
+    }
+    
+    private static String readSource(String value, ValueType type, Class<?> currentClass) throws IOException {
     	switch (type) {
     	case PATH: 
-			try {
-				BufferedReader reader1 = new BufferedReader(new FileReader(new File(value)));
-				String content1 = readAll(reader1);
-	            returnValue = content1;
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-            break;
+    		return readAll(new File(value).toPath());
     	case URL: 
-    		try (InputStream is2 = new URL(value).openStream()) {
-                BufferedReader reader2 = new BufferedReader(new InputStreamReader(is2, Charset.forName("UTF-8")));
-                String content2 = readAll(reader2);
-                returnValue = content2;
-            } catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-            }
-    		break;
+    		URLConnection con = new URL(value).openConnection();
+    		try (InputStream is2 = con.getInputStream()) {
+    			return readAll(is2, con.getContentLengthLong());
+    		}
     	case CLASSPATH: 
-    		try {
-	    		InputStream is3 = currentClass.getResourceAsStream(value);
-	            InputStreamReader isr3 = new InputStreamReader(is3);
-	            BufferedReader reader3 = new BufferedReader(isr3);
-	            String content3 = readAll(reader3);
-	            returnValue = content3;
-    		} catch (IOException e) {
-    			e.printStackTrace(); 
+    		try (InputStream is3 = currentClass.getResourceAsStream(value)) {
+    			if (is3 == null)
+    				throw new FileNotFoundException("Resource not found: " + value);
+    			return readAll(is3, -1);
     		}
-    		break;
     	default: 
-    		returnValue = null;
-    		break; 
+    		return null;
     	}
-    	return returnValue;
     }
     
 	/**
@@ -166,14 +439,16 @@ public class Files {
      * @param value        the value associated with the "type" parameter
      * @param type         the type of value you entered in the "value" parameter (can be ValueType.PATH, ValueType.CLASSPATH, ValueType.URL or ValueType.FILE)
      * @param currentClass the class used to call this method, only for use when require static
-     * @return a JSON Object
+     * @return a JSON Object, or null if the source cannot be read or is not a JSON Object
      */
     public static JSONObject parseJSON(String value, ValueType type, Class<?> currentClass) {
+    	String json = readJSON(value, type, currentClass);
+    	if (json == null)
+    		return null;
     	try {
-			return new JSONObject(readJSON(value, type, currentClass));
+			return new JSONObject(json);
 		} catch (JSONException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			Logger.getLogger(Files.class.getName()).log(Level.SEVERE, "Not a JSON Object: " + value, e);
 			return null;
 		}
     }
@@ -183,16 +458,10 @@ public class Files {
      * 
      * @param value        the value associated with the "type" parameter
      * @param type         the type of value you entered in the "value" parameter (can be ValueType.PATH, ValueType.CLASSPATH, ValueType.URL or ValueType.FILE)
-     * @return a String of a JSON Object
+     * @return a String of a JSON Object, or null if the source cannot be read
      */
     public String readJSON(String value, ValueType type) {
-    	try {
-			return readJSON(value, type, getClass());
-		} catch (JSONException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-			return null;
-		}
+    	return readJSON(value, type, getClass());
     }
     
     /**
@@ -200,25 +469,82 @@ public class Files {
      * 
      * @param value        the value associated with the "type" parameter
      * @param type         the type of value you entered in the "value" parameter (can be ValueType.PATH, ValueType.CLASSPATH, ValueType.URL or ValueType.FILE)
-     * @return a JSON Object
+     * @return a JSON Object, or null if the source cannot be read or is not a JSON Object
      */
     public JSONObject parseJSON(String value, ValueType type) {
-    	try {
-			return new JSONObject(readJSON(value, type, getClass()));
-		} catch (JSONException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-			return null;
-		}
+    	return parseJSON(value, type, getClass());
+    }
+    
+    /**
+     * Open a file containing JSON for streaming, so that single values or the records of a large array can be 
+     * read without building the whole document in memory. Close the returned stream when done. 
+     * 
+     * @param value        the value associated with the "type" parameter
+     * @param type         the type of value you entered in the "value" parameter (can be ValueType.PATH, ValueType.CLASSPATH or ValueType.URL)
+     * @param currentClass the class used to load the resource when "type" is ValueType.CLASSPATH
+     * @return a JSON stream over the content
+     * @throws IOException if the source cannot be opened
+     */
+    public static JSONStream streamJSON(String value, ValueType type, Class<?> currentClass) throws IOException {
+        return new JSONStream(openReader(value, type, currentClass));
+    }
+    
+    /**
+     * Open a buffered UTF-8 reader over a PATH, CLASSPATH or URL source. 
+     */
+    static Reader openReader(String value, ValueType type, Class<?> currentClass) throws IOException {
+        return new BufferedReader(new InputStreamReader(openStream(value, type, currentClass), StandardCharsets.UTF_8), TRANSFER_BUFFER_SIZE);
+    }
+    
+    /**
+     * Open a PATH, CLASSPATH or URL source as a stream of bytes. 
+     */
+    static InputStream openStream(String value, ValueType type, Class<?> currentClass) throws IOException {
+        switch (type) {
+        case PATH:
+            return java.nio.file.Files.newInputStream(new File(value).toPath());
+        case URL:
+            return new URL(value).openStream();
+        case CLASSPATH:
+            InputStream in = currentClass.getResourceAsStream(value);
+            if (in == null)
+                throw new FileNotFoundException("Resource not found: " + value);
+            return in;
+        default:
+            throw new IllegalArgumentException("Unsupported value type: " + type);
+        }
+    }
+    
+    /**
+     * Read a whole local file as UTF-8, with a single buffer sized from the file length. The file is read into the 
+     * heap rather than memory-mapped, because a mapping stays open until it is garbage collected and keeps the file 
+     * from being renamed or deleted on Windows. 
+     */
+    static String readAll(Path path) throws IOException {
+        return new String(java.nio.file.Files.readAllBytes(path), StandardCharsets.UTF_8);
     }
     
-    private static String readAll(Reader rd) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-            sb.append((char) cp);
+    /**
+     * Read a stream to the end as UTF-8 with bulk reads. The buffer is sized from the expected length when it is 
+     * known (not negative) and grows as needed otherwise. 
+     */
+    static String readAll(InputStream in, long sizeHint) throws IOException {
+        return new String(readBytes(in, sizeHint), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Read a stream to the end with bulk reads, see {@link #readAll(InputStream, long)}. 
+     */
+    static byte[] readBytes(InputStream in, long sizeHint) throws IOException {
+        byte[] buffer = new byte[sizeHint > 0 && sizeHint < Integer.MAX_VALUE - 8 ? (int) sizeHint + 1 : 8192];
+        int length = 0;
+        int n;
+        while ((n = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += n;
+            if (length == buffer.length)
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
         }
-        return sb.toString();
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
     }
     
     /**
@@ -227,31 +553,150 @@ public class Files {
      * @param file a file or directory
      */
     public static void removeFile(File file) {
-        if (file.isDirectory()) {
-            File[] files = file.listFiles();
-            if (files != null && files.length > 0) {
-                for (File aFile : files) {
-                    removeFile(aFile);
-                }
+        removeTree(file.toPath());
+    }
+    
+    /**
+     * Delete a file or a directory with everything in it. Subdirectories are deleted in parallel on the common 
+     * fork-join pool, and the tree is walked without recursion so that very deep trees are supported. Symbolic 
+     * links are deleted, not followed. Paths that cannot be deleted are reported rather than stopping the 
+     * deletion. 
+     * 
+     * @param path a file or directory, nothing happens if it doesn't exist
+     * @return the number of files, directories and bytes removed, and the paths that failed
+     */
+    public static DeleteReport removeTree(Path path) {
+        return removeTree(path, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Delete a file or a directory with everything in it, see {@link #removeTree(Path)}. 
+     * 
+     * @param path a file or directory, nothing happens if it doesn't exist
+     * @param pool the pool the subdirectories are deleted on
+     * @return the number of files, directories and bytes removed, and the paths that failed
+     */
+    public static DeleteReport removeTree(Path path, ForkJoinPool pool) {
+        return new TreeRemover(pool).run(path);
+    }
+    
+    /**
+     * Copy a directory tree into another one, copying only the files that are new or changed. Files are compared 
+     * by size and modification time, or by size and SHA-256 if "checksum" is true, and are copied in parallel on 
+     * the common fork-join pool. 
+     * 
+     * @param source           the directory to copy from
+     * @param target           the directory to copy to, it is created if it doesn't exist
+     * @param checksum         true to compare file contents instead of modification times
+     * @param deleteExtraneous true to delete the files and directories in the target that are not in the source
+     * @return the number of files and bytes copied, skipped and deleted, and the paths that failed
+     * @throws IOException if the source cannot be walked
+     */
+    public static SyncReport syncTree(Path source, Path target, boolean checksum, boolean deleteExtraneous) throws IOException {
+        return syncTree(source, target, checksum, deleteExtraneous, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Copy a directory tree into another one, copying only the files that are new or changed, see 
+     * {@link #syncTree(Path, Path, boolean, boolean)}. 
+     * 
+     * @param source           the directory to copy from
+     * @param target           the directory to copy to, it is created if it doesn't exist
+     * @param checksum         true to compare file contents instead of modification times
+     * @param deleteExtraneous true to delete the files and directories in the target that are not in the source
+     * @param executor         the executor the files are compared and copied on
+     * @return the number of files and bytes copied, skipped and deleted, and the paths that failed
+     * @throws IOException if the source cannot be walked
+     */
+    public static SyncReport syncTree(Path source, Path target, boolean checksum, boolean deleteExtraneous, ExecutorService executor) throws IOException {
+        return new TreeCopier(executor, checksum, deleteExtraneous).run(source, target);
+    }
+    
+    public String getHTML(String url) throws Exception {
+        // the whole body with its line breaks, as AsyncFiles.getHTML returns it
+        StringWriter result = new StringWriter();
+        streamHTML(url, result);
+        return result.toString();
+    }
+    
+    /**
+     * Fetch a web page and pass it to the consumer one line at a time (without the line terminator), so the whole 
+     * page is never held in memory. The page is requested with gzip or deflate compression and decoded with the 
+     * charset sent by the server (UTF-8 if none is given). 
+     * 
+     * @param url   an absolute URL of the page
+     * @param lines receives each line of the page
+     * @return the number of lines read
+     * @throws IOException if the request fails or the server answers with an error
+     */
+    public static long streamHTML(String url, Consumer<String> lines) throws IOException {
+        long count = 0;
+        try (BufferedReader rd = openHTML(url)) {
+            String line;
+            while ((line = rd.readLine()) != null) {
+                lines.accept(line);
+                count++;
             }
-            file.delete();
-        } else {
-            file.delete();
         }
+        return count;
     }
     
-    public String getHTML(String url) throws Exception {
-        StringBuilder result = new StringBuilder();
-        URL URL = new URL(url);
-        HttpURLConnection conn = (HttpURLConnection) URL.openConnection();
+    /**
+     * Fetch a web page and copy it to the writer in chunks as it arrives, line breaks included. The page is 
+     * requested with gzip or deflate compression and decoded with the charset sent by the server (UTF-8 if none 
+     * is given). The writer is not closed. 
+     * 
+     * @param url an absolute URL of the page
+     * @param out receives the content of the page
+     * @return the number of characters written
+     * @throws IOException if the request fails, the server answers with an error or the writer fails
+     */
+    public static long streamHTML(String url, Writer out) throws IOException {
+        long count = 0;
+        char[] chunk = new char[8192];
+        try (BufferedReader rd = openHTML(url)) {
+            int n;
+            while ((n = rd.read(chunk)) != -1) {
+                out.write(chunk, 0, n);
+                count += n;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Open a web page for reading, asking for a compressed transfer and decoding it on the fly. 
+     */
+    static BufferedReader openHTML(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
         conn.setRequestMethod("GET");
-        BufferedReader rd = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        String line;
-        while ((line = rd.readLine()) != null) {
-           result.append(line);
+        conn.setRequestProperty("Accept-Encoding", "gzip, deflate");
+        
+        InputStream in = conn.getInputStream();
+        try {
+            String encoding = conn.getContentEncoding();
+            if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding))
+                in = new GZIPInputStream(in, TRANSFER_BUFFER_SIZE);
+            else if ("deflate".equalsIgnoreCase(encoding))
+                in = new InflaterInputStream(new BufferedInputStream(in, TRANSFER_BUFFER_SIZE));
+        } catch (IOException e) {
+            in.close();
+            throw e;
         }
-        rd.close();
-        return result.toString();
+        return new BufferedReader(new InputStreamReader(in, HttpCache.charset(conn.getContentType())), TRANSFER_BUFFER_SIZE);
+    }
+    
+    /**
+     * Return the body of a web page, revalidating a copy stored in the given HTTP cache instead of downloading 
+     * the page again when it didn't change. 
+     * 
+     * @param url   an absolute URL of the page
+     * @param cache the cache the page is stored in
+     * @return the body of the page, decoded with the charset sent by the server
+     * @throws IOException if the request fails or the server answers with an error
+     */
+    public String getHTML(String url, HttpCache cache) throws IOException {
+        return cache.getString(url);
     }
     
     public String getString(String tagName, Element element) {
@@ -267,6 +712,44 @@ public class Files {
         return null;
     }
     
+    /**
+     * How hard a write tries to make sure the data survives a crash or power loss before it returns. 
+     */
+    public enum Durability {
+        /**
+         * Hand the data to the operating system and return, it is written to disk whenever the OS decides. 
+         */
+        NONE, 
+        /**
+         * Force the file content to disk before it replaces the target, so the target is never seen empty or 
+         * truncated after a crash. 
+         */
+        FLUSH, 
+        /**
+         * Force the file content and metadata to disk, and then the directory entry of the rename, so the new 
+         * content is guaranteed to be in place when the call returns. 
+         */
+        FSYNC;
+    }
+    
+    /**
+     * Read the text of several XML elements in a single streaming pass, without building a DOM. For each field, 
+     * the text directly inside its first matching element is returned, like {@link #getString(String, Element)} 
+     * does for a single tag. See {@link XMLExtractor} for the field syntax. 
+     * 
+     * @param value        the value associated with the "type" parameter
+     * @param type         the type of value you entered in the "value" parameter (can be ValueType.PATH, ValueType.CLASSPATH or ValueType.URL)
+     * @param currentClass the class used to load the resource when "type" is ValueType.CLASSPATH
+     * @param fields       tag names such as "title", or paths such as "item/title" or "/rss/channel/title"
+     * @return a map from each field that was found to its text
+     * @throws IOException if the source cannot be read or is not well-formed XML
+     */
+    public static Map<String, String> extractXML(String value, ValueType type, Class<?> currentClass, Collection<String> fields) throws IOException {
+        try (InputStream in = openStream(value, type, currentClass)) {
+            return new XMLExtractor(fields).extract(in);
+        }
+    }
+    
     /**
      * Write or replace the content of a file with a JSON Object. The file will be created if it doesn't exist. 
      * 
@@ -274,7 +757,11 @@ public class Files {
      * @param file a file
      */
     public void writeJsonFile(JSONObject obj, File file) {
-    	writeFile(obj.toString(), file);
+        try {
+            writeJsonFile(obj, file, Durability.NONE);
+        } catch (IOException ex) {
+            Logger.getLogger(Files.class.getName()).log(Level.SEVERE, null, ex);
+        }
     }
     
     /**
@@ -284,20 +771,91 @@ public class Files {
      * @param file a file
      */
     public void writeFile(String content, File file) {
-    	file.mkdirs();
-    	if (!file.exists()) {
-			try {
-				file.createNewFile();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-    	}
-    	
-        try (FileWriter writer = new FileWriter(file)) {
-                writer.write(content);
+        try {
+            writeFile(content, file, Durability.NONE);
         } catch (IOException ex) {
             Logger.getLogger(Files.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
+    
+    /**
+     * Write or replace the content of a file with a JSON Object. The object is serialized straight into a 
+     * buffered UTF-8 writer over a temporary file next to the target, without building the whole text in memory, 
+     * and the temporary file then replaces the target in one atomic rename. Readers see either the old or the 
+     * new content, never a partial file. Missing parent directories are created. 
+     * 
+     * @param obj        a JSON Object
+     * @param file       a file
+     * @param durability how far the data is forced to disk before the call returns
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeJsonFile(JSONObject obj, File file, Durability durability) throws IOException {
+        writeAtomically(file, durability, writer -> {
+            try {
+                obj.write(writer);
+            } catch (JSONException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw e;
+            }
+        });
+    }
+    
+    /**
+     * Write or replace the content of a file with a String in UTF-8, atomically, see 
+     * {@link #writeJsonFile(JSONObject, File, Durability)}. 
+     * 
+     * @param content    a String
+     * @param file       a file
+     * @param durability how far the data is forced to disk before the call returns
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeFile(String content, File file, Durability durability) throws IOException {
+        writeAtomically(file, durability, writer -> writer.write(content));
+    }
+    
+    private interface ContentWriter {
+        void write(Writer writer) throws IOException;
+    }
+    
+    private static void writeAtomically(File file, Durability durability, ContentWriter content) throws IOException {
+        IOMetrics.Probe probe = IOMetrics.start(IOMetrics.Operation.WRITE, ValueType.PATH, file.getPath());
+        try {
+            probe.end(writeAtomically(file.toPath().toAbsolutePath(), durability, content));
+        } catch (IOException | RuntimeException e) {
+            probe.fail();
+            throw e;
+        }
+    }
+    
+    private static long writeAtomically(Path target, Durability durability, ContentWriter content) throws IOException {
+        long size;
+        Path directory = target.getParent();
+        java.nio.file.Files.createDirectories(directory);
+        
+        Path tmp = tempSibling(target);
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1), TRANSFER_BUFFER_SIZE);
+                content.write(writer);
+                writer.flush();
+                size = channel.size();
+                if (durability != Durability.NONE)
+                    channel.force(durability == Durability.FSYNC);
+            }
+            moveAtomically(tmp, target);
+        } catch (IOException | RuntimeException e) {
+            java.nio.file.Files.deleteIfExists(tmp);
+            throw e;
+        }
+        
+        if (durability == Durability.FSYNC) {
+            try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                // directories can't be opened for syncing on every platform
+            }
+        }
+        return size;
+    }
 }
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An on-disk cache for HTTP GET responses that revalidates with the server instead of downloading again. The 
+ * "ETag" and "Last-Modified" headers of a response are stored with its body, the next request for the same URL 
+ * sends them back as "If-None-Match" and "If-Modified-Since", and a "304 Not Modified" answer is served from 
+ * disk. 
+ * <p>
+ * Each URL takes two files in the cache directory, "&lt;hash&gt;.body" and "&lt;hash&gt;.meta". When the bodies 
+ * take more than the configured size, the least recently used ones are deleted. Responses without a validator 
+ * are not stored. 
+ */
+public class HttpCache {
+
+    private static final String KEY_URL = "url";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+    private static final String KEY_CHARSET = "charset";
+
+    private final File directory;
+    private final long maxBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a cache in the given directory, which is created if it doesn't exist. 
+     * 
+     * @param directory the directory the responses are stored in
+     * @param maxBytes  the maximum total size of the stored bodies
+     * @throws IOException if the directory cannot be created
+     */
+    public HttpCache(File directory, long maxBytes) throws IOException {
+        if (maxBytes < 1)
+            throw new IllegalArgumentException("Cache size must be at least 1: " + maxBytes);
+        java.nio.file.Files.createDirectories(directory.toPath());
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Fetch the body of an URL and decode it with the charset of the response (UTF-8 if none is given). 
+     * 
+     * @param url an absolute URL
+     * @return the body of the response
+     * @throws IOException if the request fails or the server answers with an error
+     */
+    public String getString(String url) throws IOException {
+        Response response = get(url);
+        return new String(response.body, response.charset);
+    }
+
+    /**
+     * Fetch the body of an URL, from disk if the server confirms that the cached copy is still current. 
+     * 
+     * @param url an absolute URL
+     * @return the body of the response
+     * @throws IOException if the request fails or the server answers with an error
+     */
+    public byte[] getBytes(String url) throws IOException {
+        return get(url).body;
+    }
+
+    /**
+     * @return the number of requests answered with "304 Not Modified" and served from disk
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of requests that transferred the full body
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Response get(String url) throws IOException {
+        String key = key(url);
+        File body = new File(directory, key + ".body");
+        File meta = new File(directory, key + ".meta");
+
+        Properties cached = readMeta(meta);
+        if (cached != null && (!url.equals(cached.getProperty(KEY_URL)) || !body.isFile()))
+            cached = null;
+
+        HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
+        con.setUseCaches(false);
+        if (cached != null) {
+            if (cached.getProperty(KEY_ETAG) != null)
+                con.setRequestProperty("If-None-Match", cached.getProperty(KEY_ETAG));
+            if (cached.getProperty(KEY_LAST_MODIFIED) != null)
+                con.setRequestProperty("If-Modified-Since", cached.getProperty(KEY_LAST_MODIFIED));
+        }
+
+        if (cached != null && con.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            con.disconnect();
+            try {
+                byte[] bytes = java.nio.file.Files.readAllBytes(body.toPath());
+                meta.setLastModified(System.currentTimeMillis());
+                hits.increment();
+                return new Response(bytes, Charset.forName(cached.getProperty(KEY_CHARSET, "UTF-8")));
+            } catch (IOException e) {
+                // evicted in the meantime, fetch again without validators
+                meta.delete();
+                return get(url);
+            }
+        }
+
+        byte[] bytes;
+        try (InputStream in = con.getInputStream()) {
+            bytes = Files.readBytes(in, con.getContentLengthLong());
+        }
+        misses.increment();
+        Charset charset = charset(con.getContentType());
+
+        String etag = con.getHeaderField("ETag");
+        String lastModified = con.getHeaderField("Last-Modified");
+        if ((etag != null || lastModified != null) && bytes.length <= maxBytes) {
+            Properties stored = new Properties();
+            stored.setProperty(KEY_URL, url);
+            stored.setProperty(KEY_CHARSET, charset.name());
+            if (etag != null)
+                stored.setProperty(KEY_ETAG, etag);
+            if (lastModified != null)
+                stored.setProperty(KEY_LAST_MODIFIED, lastModified);
+            store(key, bytes, stored);
+        }
+        return new Response(bytes, charset);
+    }
+
+    private void store(String key, byte[] bytes, Properties meta) throws IOException {
+        Path body = directory.toPath().resolve(key + ".body");
+        Path tmp = java.nio.file.Files.createTempFile(directory.toPath(), key, ".tmp");
+        java.nio.file.Files.write(tmp, bytes);
+        Files.moveAtomically(tmp, body);
+
+        Path metaTmp = java.nio.file.Files.createTempFile(directory.toPath(), key, ".tmp");
+        try (Writer writer = java.nio.file.Files.newBufferedWriter(metaTmp, StandardCharsets.UTF_8)) {
+            meta.store(writer, null);
+        }
+        Files.moveAtomically(metaTmp, directory.toPath().resolve(key + ".meta"));
+        evict();
+    }
+
+    /**
+     * Delete the least recently used responses until the bodies fit in the configured size. 
+     */
+    private synchronized void evict() {
+        File[] metas = directory.listFiles((dir, name) -> name.endsWith(".meta"));
+        if (metas == null)
+            return;
+
+        long total = 0;
+        List<File> entries = new ArrayList<>();
+        for (File meta : metas) {
+            total += bodyOf(meta).length();
+            entries.add(meta);
+        }
+        if (total <= maxBytes)
+            return;
+
+        entries.sort(Comparator.comparingLong(File::lastModified));
+        for (File meta : entries) {
+            if (total <= maxBytes)
+                break;
+            File body = bodyOf(meta);
+            total -= body.length();
+            meta.delete();
+            body.delete();
+        }
+    }
+
+    private static File bodyOf(File meta) {
+        String name = meta.getName();
+        return new File(meta.getParentFile(), name.substring(0, name.length() - ".meta".length()) + ".body");
+    }
+
+    private static Properties readMeta(File meta) {
+        if (!meta.isFile())
+            return null;
+        Properties properties = new Properties();
+        try (Reader reader = java.nio.file.Files.newBufferedReader(meta.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            return properties;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Return the charset named in a Content-Type header, or UTF-8. 
+     */
+    static Charset charset(String contentType) {
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                param = param.trim();
+                if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                    try {
+                        return Charset.forName(param.substring(8).replace("\"", "").trim());
+                    } catch (IllegalArgumentException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static String key(String url) {
+        return Files.hex(Files.sha256().digest(url.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static class Response {
+
+        final byte[] body;
+        final Charset charset;
+
+        Response(byte[] body, Charset charset) {
+            this.body = body;
+            this.charset = charset;
+        }
+    }
+}
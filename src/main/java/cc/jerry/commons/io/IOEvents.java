@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import cc.jerry.commons.io.IOMetrics.Operation;
+
+/**
+ * The JDK Flight Recorder events emitted by {@link IOMetrics}, one type per {@link Operation}. They show up in a 
+ * recording under "Commons Library / I/O" with the source, the number of bytes and the duration. 
+ */
+class IOEvents {
+
+    private static final EventType[] TYPES = {
+            EventType.getEventType(DownloadEvent.class),
+            EventType.getEventType(ReadEvent.class),
+            EventType.getEventType(WriteEvent.class),
+            EventType.getEventType(DeleteEvent.class),
+    };
+
+    private IOEvents() {
+    }
+
+    /**
+     * Return a new event for the operation, or null if no recording has this event type enabled. 
+     */
+    static IOEvent create(Operation operation) {
+        if (!TYPES[operation.ordinal()].isEnabled())
+            return null;
+        switch (operation) {
+        case DOWNLOAD:
+            return new DownloadEvent();
+        case READ:
+            return new ReadEvent();
+        case WRITE:
+            return new WriteEvent();
+        default:
+            return new DeleteEvent();
+        }
+    }
+
+    @Category({ "Commons Library", "I/O" })
+    abstract static class IOEvent extends Event {
+
+        @Label("Source")
+        @Description("The URL, path or resource name")
+        String source;
+
+        @Label("Value Type")
+        String valueType;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("cc.jerry.commons.io.Download")
+    @Label("Download")
+    static class DownloadEvent extends IOEvent {
+    }
+
+    @Name("cc.jerry.commons.io.Read")
+    @Label("Read")
+    static class ReadEvent extends IOEvent {
+    }
+
+    @Name("cc.jerry.commons.io.Write")
+    @Label("Write")
+    static class WriteEvent extends IOEvent {
+    }
+
+    @Name("cc.jerry.commons.io.Delete")
+    @Label("Delete")
+    static class DeleteEvent extends IOEvent {
+    }
+}
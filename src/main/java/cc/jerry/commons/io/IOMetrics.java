@@ -0,0 +1,283 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import cc.jerry.commons.io.Files.ValueType;
+
+/**
+ * Counters and latency histograms for the I/O done through this package, per operation and per 
+ * {@link ValueType}, plus JDK Flight Recorder events (see {@link IOEvents}) for every download, read, write and 
+ * delete. 
+ * <p>
+ * Collection is off by default and can be switched on with {@link #setEnabled(boolean)} or the system property 
+ * "cc.jerry.commons.io.metrics=true". While it is off and no flight recording has the events enabled, an 
+ * operation costs two volatile reads and no allocation. Counters use {@link LongAdder}, so concurrent 
+ * operations don't contend on them. 
+ * <p>
+ * A {@link Recorder} can be installed to forward every measurement to another metrics library. 
+ */
+public class IOMetrics {
+
+    /**
+     * The kinds of operations that are measured. Downloads count the bytes written to disk, reads the characters 
+     * decoded, writes the size of the written file and deletes the size of the removed files. 
+     */
+    public enum Operation {
+        DOWNLOAD, READ, WRITE, DELETE;
+    }
+
+    /**
+     * Receives every measurement while metrics are enabled. Called on the thread that did the I/O, so it should 
+     * return quickly. 
+     */
+    public interface Recorder {
+        void record(Operation operation, ValueType type, long bytes, long nanos, boolean success);
+    }
+
+    /**
+     * The number of latency buckets, bucket i counts operations that took less than 2^i microseconds (and at 
+     * least 2^(i-1)), the last bucket counts everything slower. 
+     */
+    public static final int BUCKETS = 32;
+
+    private static volatile boolean enabled = Boolean.getBoolean("cc.jerry.commons.io.metrics");
+    private static volatile Recorder recorder;
+
+    private static final Stats[][] STATS = new Stats[Operation.values().length][ValueType.values().length];
+    static {
+        for (Stats[] row : STATS) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = new Stats();
+            }
+        }
+    }
+
+    private static final Probe NOOP = new Probe(null, null, null, false);
+
+    private IOMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switch the counters and histograms on or off. Flight Recorder events are controlled by the recording 
+     * settings and are emitted either way. 
+     * 
+     * @param enabled true to collect metrics
+     */
+    public static void setEnabled(boolean enabled) {
+        IOMetrics.enabled = enabled;
+    }
+
+    /**
+     * Install a recorder that receives every measurement while metrics are enabled, replacing the previous one. 
+     * 
+     * @param recorder the recorder, or null to remove it
+     */
+    public static void setRecorder(Recorder recorder) {
+        IOMetrics.recorder = recorder;
+    }
+
+    /**
+     * @return the number of operations that completed, successfully or not
+     */
+    public static long getCount(Operation operation, ValueType type) {
+        return stats(operation, type).count.sum();
+    }
+
+    /**
+     * @return the number of operations that failed
+     */
+    public static long getFailures(Operation operation, ValueType type) {
+        return stats(operation, type).failures.sum();
+    }
+
+    /**
+     * @return the number of bytes transferred by the successful operations
+     */
+    public static long getBytes(Operation operation, ValueType type) {
+        return stats(operation, type).bytes.sum();
+    }
+
+    /**
+     * @return the total time spent in the operations, in nanoseconds
+     */
+    public static long getTotalNanos(Operation operation, ValueType type) {
+        return stats(operation, type).nanos.sum();
+    }
+
+    /**
+     * Return the latency histogram of an operation, see {@link #BUCKETS}. 
+     * 
+     * @return the number of operations in each bucket
+     */
+    public static long[] getHistogram(Operation operation, ValueType type) {
+        LongAdder[] buckets = stats(operation, type).buckets;
+        long[] histogram = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            histogram[i] = buckets[i].sum();
+        }
+        return histogram;
+    }
+
+    /**
+     * Estimate a latency percentile from the histogram. The result is the upper bound of the bucket the 
+     * percentile falls in, so it is accurate to within a factor of two. 
+     * 
+     * @param percentile a value between 0 and 100
+     * @return the estimated latency in microseconds, or 0 if nothing was measured
+     */
+    public static long getPercentileMicros(Operation operation, ValueType type, double percentile) {
+        long[] histogram = getHistogram(operation, type);
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank)
+                return i == histogram.length - 1 ? Long.MAX_VALUE : 1L << i;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Set every counter and histogram back to zero. 
+     */
+    public static void reset() {
+        for (Stats[] row : STATS) {
+            for (Stats stats : row) {
+                stats.reset();
+            }
+        }
+    }
+
+    private static Stats stats(Operation operation, ValueType type) {
+        return STATS[operation.ordinal()][type.ordinal()];
+    }
+
+    /**
+     * Start measuring an operation. The returned probe must be ended with {@link Probe#end(long)} or 
+     * {@link Probe#fail()}. 
+     * 
+     * @param source the URL or path the operation works on, used in the flight recorder event
+     */
+    static Probe start(Operation operation, ValueType type, String source) {
+        IOEvents.IOEvent event = IOEvents.create(operation);
+        if (event == null && !enabled)
+            return NOOP;
+        if (event != null) {
+            event.source = source;
+            event.valueType = type.name();
+            event.begin();
+        }
+        return new Probe(operation, type, event, enabled);
+    }
+
+    /**
+     * An operation being measured. 
+     */
+    static class Probe {
+
+        private final Operation operation;
+        private final ValueType type;
+        private final IOEvents.IOEvent event;
+        private final boolean timed;
+        private final long start;
+
+        private Probe(Operation operation, ValueType type, IOEvents.IOEvent event, boolean timed) {
+            this.operation = operation;
+            this.type = type;
+            this.event = event;
+            this.timed = timed;
+            this.start = timed ? System.nanoTime() : 0;
+        }
+
+        void end(long bytes) {
+            finish(bytes, true);
+        }
+
+        void fail() {
+            finish(0, false);
+        }
+
+        private void finish(long bytes, boolean success) {
+            if (operation == null)
+                return;
+            if (event != null) {
+                event.end();
+                event.bytes = bytes;
+                event.success = success;
+                event.commit();
+            }
+            if (timed) {
+                long nanos = System.nanoTime() - start;
+                stats(operation, type).add(bytes, nanos, success);
+                Recorder current = recorder;
+                if (current != null)
+                    current.record(operation, type, bytes, nanos, success);
+            }
+        }
+    }
+
+    private static class Stats {
+
+        final LongAdder count = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        Stats() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void add(long bytes, long nanos, boolean success) {
+            count.increment();
+            if (success)
+                this.bytes.add(bytes);
+            else
+                failures.increment();
+            this.nanos.add(nanos);
+
+            long micros = nanos / 1000;
+            int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+            buckets[Math.min(bucket, BUCKETS - 1)].increment();
+        }
+
+        void reset() {
+            count.reset();
+            failures.reset();
+            bytes.reset();
+            nanos.reset();
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import cc.jerry.commons.io.Files.ValueType;
+
+/**
+ * A bounded cache of parsed JSON documents keyed by source, so that the same configuration or resource file is 
+ * only read and parsed again when it changed. 
+ * <p>
+ * PATH entries are checked against the modification time and size of the file on every lookup and reloaded when 
+ * either changed. CLASSPATH entries never change while the application runs and are kept until evicted. URL 
+ * sources are not cached, every lookup reads them again. 
+ * <p>
+ * The least recently used entries are evicted once the cache holds more than the maximum number of documents or 
+ * the maximum total number of characters. Every lookup returns a fresh copy of the cached tree, so callers may 
+ * modify the result without affecting each other. 
+ */
+public class JSONCache {
+
+    private final int maxEntries;
+    private final long maxChars;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a cache holding at most the given number of documents. 
+     * 
+     * @param maxEntries the maximum number of documents to keep
+     */
+    public JSONCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a cache holding at most the given number of documents and the given total size of source text. 
+     * 
+     * @param maxEntries the maximum number of documents to keep
+     * @param maxChars   the maximum total length in characters of the cached documents
+     */
+    public JSONCache(int maxEntries, long maxChars) {
+        if (maxEntries < 1 || maxChars < 1)
+            throw new IllegalArgumentException("Cache limits must be at least 1: " + maxEntries + ", " + maxChars);
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Return the JSON Object in a file, from the cache when it is still up to date. 
+     * 
+     * @param value        the value associated with the "type" parameter
+     * @param type         the type of value you entered in the "value" parameter (can be ValueType.PATH, ValueType.CLASSPATH or ValueType.URL)
+     * @param currentClass the class used to load the resource when "type" is ValueType.CLASSPATH
+     * @return a copy of the JSON Object that the caller may modify
+     * @throws IOException   if the source cannot be read
+     * @throws JSONException if the content is not a JSON Object
+     */
+    public JSONObject parseJSON(String value, ValueType type, Class<?> currentClass) throws IOException {
+        if (type == ValueType.URL) {
+            misses.increment();
+            return new JSONObject(load(value, type, currentClass));
+        }
+
+        Key key = new Key(type, value, type == ValueType.CLASSPATH ? currentClass : null);
+        long[] stamp = type == ValueType.PATH ? stamp(value) : null;
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            if (stamp == null || (entry.modified == stamp[0] && entry.size == stamp[1])) {
+                hits.increment();
+                return copy(entry.json);
+            }
+            invalidations.increment();
+        }
+        misses.increment();
+
+        String content = load(value, type, currentClass);
+        JSONObject json = new JSONObject(content);
+        put(key, new Entry(json, content.length(), stamp == null ? 0 : stamp[0], stamp == null ? 0 : stamp[1]));
+        return copy(json);
+    }
+
+    /**
+     * Remove the cached document of a source, if any. 
+     * 
+     * @param value the value the document was loaded with
+     * @param type  the type of the value
+     */
+    public synchronized void invalidate(String value, ValueType type) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().type == type && e.getKey().value.equals(value)) {
+                chars -= e.getValue().chars;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove every cached document. 
+     */
+    public synchronized void clear() {
+        entries.clear();
+        chars = 0;
+    }
+
+    /**
+     * @return the number of documents in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of lookups served from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that had to read and parse the source
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of cached PATH documents that were dropped because the file changed
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return the number of documents evicted to stay within the limits
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "JSONCache[size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", invalidations=" + getInvalidations() + ", evictions=" + getEvictions() + "]";
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        Entry old = entries.put(key, entry);
+        if (old != null)
+            chars -= old.chars;
+        chars += entry.chars;
+
+        Iterator<Entry> it = entries.values().iterator();
+        while ((entries.size() > maxEntries || chars > maxChars) && entries.size() > 1) {
+            Entry eldest = it.next();
+            chars -= eldest.chars;
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static String load(String value, ValueType type, Class<?> currentClass) throws IOException {
+        String content = Files.read(value, type, currentClass);
+        if (content == null)
+            throw new IllegalArgumentException("Unsupported value type: " + type);
+        return content;
+    }
+
+    /**
+     * Return the modification time and size of a file. 
+     */
+    private static long[] stamp(String path) throws IOException {
+        try {
+            BasicFileAttributes attributes = java.nio.file.Files.readAttributes(new File(path).toPath(), BasicFileAttributes.class);
+            return new long[] { attributes.lastModifiedTime().toMillis(), attributes.size() };
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path);
+        }
+    }
+
+    static JSONObject copy(JSONObject json) {
+        JSONObject copy = new JSONObject();
+        for (String key : json.keySet()) {
+            copy.put(key, copyValue(json.opt(key)));
+        }
+        return copy;
+    }
+
+    static JSONArray copy(JSONArray json) {
+        JSONArray copy = new JSONArray();
+        for (int i = 0; i < json.length(); i++) {
+            copy.put(copyValue(json.opt(i)));
+        }
+        return copy;
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof JSONObject)
+            return copy((JSONObject) value);
+        if (value instanceof JSONArray)
+            return copy((JSONArray) value);
+        return value;
+    }
+
+    private static class Key {
+
+        final ValueType type;
+        final String value;
+        final Class<?> loader;
+
+        Key(ValueType type, String value, Class<?> loader) {
+            this.type = type;
+            this.value = value;
+            this.loader = loader;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return type == other.type && value.equals(other.value) && loader == other.loader;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, value, loader);
+        }
+    }
+
+    private static class Entry {
+
+        final JSONObject json;
+        final long chars;
+        final long modified;
+        final long size;
+
+        Entry(JSONObject json, long chars, long modified, long size) {
+            this.json = json;
+            this.chars = chars;
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+}
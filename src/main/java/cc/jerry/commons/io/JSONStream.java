@@ -0,0 +1,291 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+/**
+ * Reads a JSON document from a stream in a single forward pass without building the whole tree. Only the values 
+ * that are asked for are turned into {@link org.json.JSONObject}s, {@link org.json.JSONArray}s or plain values, 
+ * everything else is skipped as it is read. 
+ * <p>
+ * Values are addressed by paths of object keys and array indices separated by dots, for example 
+ * "export.records" or "export.records.0.id". The empty path "" is the document itself. 
+ * <p>
+ * A stream can only be read once, call one of {@link #forEach(String, Consumer)}, {@link #get(String)} or 
+ * {@link #select(Collection)} and then close it. 
+ */
+public class JSONStream implements AutoCloseable {
+
+    private final Reader reader;
+    private final JSONTokener tokener;
+
+    /**
+     * Create a stream over a reader, the reader is closed with the stream. 
+     * 
+     * @param reader a reader positioned at the start of a JSON document
+     */
+    public JSONStream(Reader reader) {
+        this.reader = reader;
+        this.tokener = new JSONTokener(reader);
+    }
+
+    /**
+     * Pass every element of the array at the given path to the action, one at a time. Only one element is held 
+     * in memory at once. If the value at the path is not an array, it is passed to the action on its own. 
+     * 
+     * @param path   the path of an array, for example "records"
+     * @param action receives each element as a JSONObject, JSONArray, String, Number, Boolean or JSONObject.NULL
+     * @return the number of values passed to the action, 0 if the path does not exist
+     * @throws JSONException if the document is not valid JSON
+     */
+    public long forEach(String path, Consumer<Object> action) {
+        if (!seek(split(path), 0))
+            return 0;
+
+        char c = tokener.nextClean();
+        if (c != '[') {
+            tokener.back();
+            action.accept(tokener.nextValue());
+            return 1;
+        }
+
+        long count = 0;
+        if (tokener.nextClean() == ']')
+            return 0;
+        tokener.back();
+        while (true) {
+            action.accept(tokener.nextValue());
+            count++;
+            c = tokener.nextClean();
+            if (c == ']')
+                return count;
+            if (c != ',')
+                throw tokener.syntaxError("Expected a ',' or ']'");
+        }
+    }
+
+    /**
+     * Return the value at the given path. 
+     * 
+     * @param path the path of the value, for example "meta.version"
+     * @return a JSONObject, JSONArray, String, Number, Boolean or JSONObject.NULL, or null if the path does not exist
+     * @throws JSONException if the document is not valid JSON
+     */
+    public Object get(String path) {
+        if (!seek(split(path), 0))
+            return null;
+        return tokener.nextValue();
+    }
+
+    /**
+     * Return the values at all the given paths, collected in one pass over the document. Reading stops as soon as 
+     * every path was found. A path inside another requested path is not reported separately. 
+     * 
+     * @param paths the paths to look up
+     * @return a map from each path that was found to its value
+     * @throws JSONException if the document is not valid JSON
+     */
+    public Map<String, Object> select(Collection<String> paths) {
+        Set<String> wanted = new HashSet<>(paths);
+        Set<String> prefixes = new HashSet<>();
+        for (String path : wanted) {
+            for (int i = path.indexOf('.'); i != -1; i = path.indexOf('.', i + 1)) {
+                prefixes.add(path.substring(0, i));
+            }
+            if (!path.isEmpty())
+                prefixes.add("");
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        collect("", wanted, prefixes, result);
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Walk the value at the current position, materializing the wanted paths and descending only into values 
+     * that contain one. Returns false once everything was found. 
+     */
+    private boolean collect(String path, Set<String> wanted, Set<String> prefixes, Map<String, Object> result) {
+        if (wanted.contains(path)) {
+            result.put(path, tokener.nextValue());
+            return result.size() < wanted.size();
+        }
+        if (!prefixes.contains(path)) {
+            skipValue();
+            return true;
+        }
+
+        String prefix = path.isEmpty() ? "" : path + ".";
+        char c = tokener.nextClean();
+        if (c == '{') {
+            if (tokener.nextClean() == '}')
+                return true;
+            tokener.back();
+            while (true) {
+                String key = nextKey();
+                if (!collect(prefix + key, wanted, prefixes, result))
+                    return false;
+                c = tokener.nextClean();
+                if (c == '}')
+                    return true;
+                if (c != ',')
+                    throw tokener.syntaxError("Expected a ',' or '}'");
+            }
+        } else if (c == '[') {
+            if (tokener.nextClean() == ']')
+                return true;
+            tokener.back();
+            for (int i = 0; ; i++) {
+                if (!collect(prefix + i, wanted, prefixes, result))
+                    return false;
+                c = tokener.nextClean();
+                if (c == ']')
+                    return true;
+                if (c != ',')
+                    throw tokener.syntaxError("Expected a ',' or ']'");
+            }
+        } else {
+            tokener.back();
+            tokener.nextValue();
+            return true;
+        }
+    }
+
+    /**
+     * Move the tokener to the start of the value at the given path, skipping everything before it. 
+     */
+    private boolean seek(String[] path, int depth) {
+        if (depth == path.length)
+            return true;
+
+        char c = tokener.nextClean();
+        if (c == '{') {
+            if (tokener.nextClean() == '}')
+                return false;
+            tokener.back();
+            while (true) {
+                if (nextKey().equals(path[depth]))
+                    return seek(path, depth + 1);
+                skipValue();
+                c = tokener.nextClean();
+                if (c == '}')
+                    return false;
+                if (c != ',')
+                    throw tokener.syntaxError("Expected a ',' or '}'");
+            }
+        } else if (c == '[') {
+            int index;
+            try {
+                index = Integer.parseInt(path[depth]);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (tokener.nextClean() == ']')
+                return false;
+            tokener.back();
+            for (int i = 0; ; i++) {
+                if (i == index)
+                    return seek(path, depth + 1);
+                skipValue();
+                c = tokener.nextClean();
+                if (c == ']')
+                    return false;
+                if (c != ',')
+                    throw tokener.syntaxError("Expected a ',' or ']'");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read an object key and the ':' after it. 
+     */
+    private String nextKey() {
+        char c = tokener.nextClean();
+        String key;
+        if (c == '"' || c == '\'') {
+            key = tokener.nextString(c);
+        } else {
+            tokener.back();
+            key = tokener.nextValue().toString();
+        }
+        if (tokener.nextClean() != ':')
+            throw tokener.syntaxError("Expected a ':' after a key");
+        return key;
+    }
+
+    /**
+     * Read past the next value without keeping any of it. 
+     */
+    private void skipValue() {
+        char c = tokener.nextClean();
+        switch (c) {
+        case '"':
+        case '\'':
+            tokener.nextString(c);
+            return;
+        case '{':
+            if (tokener.nextClean() == '}')
+                return;
+            tokener.back();
+            while (true) {
+                nextKey();
+                skipValue();
+                c = tokener.nextClean();
+                if (c == '}')
+                    return;
+                if (c != ',')
+                    throw tokener.syntaxError("Expected a ',' or '}'");
+            }
+        case '[':
+            if (tokener.nextClean() == ']')
+                return;
+            tokener.back();
+            while (true) {
+                skipValue();
+                c = tokener.nextClean();
+                if (c == ']')
+                    return;
+                if (c != ',')
+                    throw tokener.syntaxError("Expected a ',' or ']'");
+            }
+        default:
+            tokener.back();
+            tokener.nextValue();
+        }
+    }
+
+    private static String[] split(String path) {
+        return path.isEmpty() ? new String[0] : path.split("\\.");
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads a file over several connections at once. Each connection fetches one byte range with an HTTP 
+ * "Range" header and writes it at its offset in a file that is preallocated to the full size. Servers that 
+ * don't answer the probe with "206 Partial Content" and a known length are downloaded over a single stream. 
+ */
+class RangedDownload {
+
+    /**
+     * Ranges smaller than this are not worth a connection of their own. 
+     */
+    static final long MIN_RANGE_SIZE = 1024 * 1024;
+
+    private final URL url;
+    private final File target;
+    private final int connections;
+    private final DownloadListener listener;
+    private final RateLimiter limiter;
+
+    RangedDownload(URL url, File target, int connections, DownloadListener listener, RateLimiter limiter) {
+        if (connections < 1)
+            throw new IllegalArgumentException("Number of connections must be at least 1: " + connections);
+        this.url = url;
+        this.target = target;
+        this.connections = connections;
+        this.listener = listener;
+        this.limiter = limiter;
+    }
+
+    DownloadResult run() throws IOException {
+        IOMetrics.Probe probe = IOMetrics.start(IOMetrics.Operation.DOWNLOAD, Files.ValueType.URL, url.toString());
+        try {
+            DownloadResult result = download();
+            probe.end(result.getBytes());
+            if (listener != null)
+                listener.onComplete(result);
+            return result;
+        } catch (IOException e) {
+            probe.fail();
+            if (listener != null)
+                listener.onFailure(e);
+            throw e;
+        }
+    }
+
+    private DownloadResult download() throws IOException {
+        long start = System.nanoTime();
+        TransferProgress progress = new TransferProgress(listener, limiter);
+
+        URLConnection probe = url.openConnection();
+        probe.setRequestProperty("Range", "bytes=0-0");
+        long total = rangeTotal(probe);
+
+        if (total < 0) {
+            URLConnection whole = probe;
+            if (probe instanceof HttpURLConnection && ((HttpURLConnection) probe).getResponseCode() != HttpURLConnection.HTTP_OK) {
+                // partial response of unknown length, the probe body is not the whole file: ask again without a range
+                ((HttpURLConnection) probe).disconnect();
+                whole = url.openConnection();
+            }
+            // otherwise there is no range support and the probe response already carries the whole body
+            long written = Files.receive(whole, target.toPath(), progress);
+            progress.finish();
+            return new DownloadResult(target, written, System.nanoTime() - start);
+        }
+        probe.getInputStream().close();
+        progress.setTotal(total);
+
+        int parts = (int) Math.max(1, Math.min(connections, total / MIN_RANGE_SIZE));
+        long rangeSize = (total + parts - 1) / parts;
+
+        // the ranges are written to a temporary file that only replaces the target once every range is complete
+        Path path = target.toPath().toAbsolutePath();
+        Path tmp = Files.tempSibling(path);
+        ExecutorService executor = Executors.newFixedThreadPool(parts);
+        try {
+            long written = 0;
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                try (RandomAccessFile file = new RandomAccessFile(tmp.toFile(), "rw")) {
+                    file.setLength(total);
+                }
+                List<Future<Long>> futures = new ArrayList<>(parts);
+                for (long from = 0; from < total; from += rangeSize) {
+                    long first = from;
+                    long last = Math.min(total, from + rangeSize) - 1;
+                    futures.add(executor.submit(() -> fetchRange(out, first, last, progress)));
+                }
+
+                for (Future<Long> future : futures) {
+                    written += await(future);
+                }
+            }
+            Files.moveAtomically(tmp, path);
+            progress.finish();
+            return new DownloadResult(target, written, System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            java.nio.file.Files.deleteIfExists(tmp);
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the full length of the resource if the server honoured the range request, or -1 otherwise. 
+     */
+    private static long rangeTotal(URLConnection con) throws IOException {
+        if (!(con instanceof HttpURLConnection) || ((HttpURLConnection) con).getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+            return -1;
+
+        // Content-Range: bytes 0-0/12345
+        String range = con.getHeaderField("Content-Range");
+        if (range == null || range.indexOf('/') == -1)
+            return -1;
+        try {
+            return Long.parseLong(range.substring(range.indexOf('/') + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private long fetchRange(FileChannel out, long first, long last, TransferProgress progress) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setRequestProperty("Range", "bytes=" + first + "-" + last);
+        try (InputStream in = con.getInputStream()) {
+            if (con.getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+                throw new IOException("Server ignored range " + first + "-" + last + " of " + url + " (HTTP " + con.getResponseCode() + ")");
+
+            long written = Files.transfer(in, out, first, progress);
+            if (written != last - first + 1)
+                throw new IOException("Incomplete range " + first + "-" + last + " of " + url + ": got " + written + " bytes");
+            return written;
+        }
+    }
+
+    private static long await(Future<Long> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket that caps the bandwidth of downloads. The bucket refills at the configured number of bytes per 
+ * second up to the burst size, and every chunk that is received takes its size in tokens. When the bucket runs 
+ * dry the downloading thread sleeps until enough tokens have been refilled. 
+ * <p>
+ * One limiter can be shared by any number of concurrent downloads, which then share the bandwidth between them. 
+ */
+public class RateLimiter {
+
+    private final double bytesPerNano;
+    private final long burst;
+
+    private double tokens;
+    private long refilled;
+
+    /**
+     * Create a limiter with a burst of one second worth of bytes. 
+     * 
+     * @param bytesPerSecond the maximum average rate
+     */
+    public RateLimiter(long bytesPerSecond) {
+        this(bytesPerSecond, bytesPerSecond);
+    }
+
+    /**
+     * Create a limiter. 
+     * 
+     * @param bytesPerSecond the maximum average rate
+     * @param burst          the number of bytes that may be received at once after an idle period
+     */
+    public RateLimiter(long bytesPerSecond, long burst) {
+        if (bytesPerSecond < 1 || burst < 1)
+            throw new IllegalArgumentException("Rate and burst must be at least 1: " + bytesPerSecond + ", " + burst);
+        this.bytesPerNano = bytesPerSecond / 1e9;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilled = System.nanoTime();
+    }
+
+    /**
+     * @return the maximum average rate in bytes per second
+     */
+    public long getBytesPerSecond() {
+        return Math.round(bytesPerNano * 1e9);
+    }
+
+    /**
+     * Take the given number of bytes from the bucket, waiting until they are available. 
+     * 
+     * @param bytes the number of bytes about to be transferred
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public void acquire(long bytes) throws InterruptedIOException {
+        long wait = reserve(bytes);
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+            }
+        }
+    }
+
+    /**
+     * Take the tokens now, going into debt if there are not enough, and return how long the caller has to wait 
+     * for the debt to be paid back. Later callers queue up behind the debt. 
+     */
+    private synchronized long reserve(long bytes) {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilled) * bytesPerNano);
+        refilled = now;
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) (-tokens / bytesPerNano);
+    }
+}
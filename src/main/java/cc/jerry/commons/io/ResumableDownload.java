@@ -0,0 +1,239 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * Downloads a file into "&lt;target&gt;.part" and keeps a small "&lt;target&gt;.part.meta" sidecar next to it with 
+ * the URL, the validators sent by the server and the last offset known to be on disk. An interrupted download 
+ * continues from that offset on the next attempt. Once complete, the size and optional SHA-256 are checked and 
+ * the part file is moved to its final name. 
+ */
+class ResumableDownload {
+
+    /**
+     * How many bytes are written between two checkpoints of the sidecar. 
+     */
+    static final long CHECKPOINT_INTERVAL = 4 * 1024 * 1024;
+
+    private static final String KEY_URL = "url";
+    private static final String KEY_OFFSET = "offset";
+    private static final String KEY_LENGTH = "length";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+
+    private final URL url;
+    private final File target;
+    private final long expectedSize;
+    private final String sha256;
+    private final File part;
+    private final File meta;
+
+    ResumableDownload(URL url, File target, long expectedSize, String sha256) {
+        this.url = url;
+        this.target = target;
+        this.expectedSize = expectedSize;
+        this.sha256 = sha256;
+        this.part = new File(target.getPath() + ".part");
+        this.meta = new File(target.getPath() + ".part.meta");
+    }
+
+    DownloadResult run() throws IOException {
+        IOMetrics.Probe probe = IOMetrics.start(IOMetrics.Operation.DOWNLOAD, Files.ValueType.URL, url.toString());
+        try {
+            DownloadResult result = download();
+            probe.end(result.getBytes());
+            return result;
+        } catch (IOException e) {
+            probe.fail();
+            throw e;
+        }
+    }
+
+    private DownloadResult download() throws IOException {
+        long start = System.nanoTime();
+        Properties state = loadState();
+        long offset = resumeOffset(state);
+
+        URLConnection con = url.openConnection();
+        if (offset > 0) {
+            con.setRequestProperty("Range", "bytes=" + offset + "-");
+            String validator = state.getProperty(KEY_ETAG, state.getProperty(KEY_LAST_MODIFIED));
+            if (validator != null)
+                con.setRequestProperty("If-Range", validator);
+        }
+
+        int status = status(con);
+        boolean complete = status == 416 && offset > 0 && offset == parseLong(state.getProperty(KEY_LENGTH), -1);
+        if (status == HttpURLConnection.HTTP_PARTIAL && rangeStart(con) != offset
+                || status == 416 && offset > 0 && !complete) {
+            // the server did not resume where we asked, or no longer has the bytes the part file claims: appending 
+            // would corrupt the file, so drop what we have and start over
+            ((HttpURLConnection) con).disconnect();
+            discard();
+            con = url.openConnection();
+            status = status(con);
+            offset = 0;
+        }
+        long length;
+        if (complete) {
+            // everything was already on disk
+            length = offset;
+        } else {
+            if (status != HttpURLConnection.HTTP_PARTIAL) {
+                // fresh start: no usable part file, or the resource changed since it was written
+                offset = 0;
+            }
+            length = con.getContentLengthLong() < 0 ? -1 : offset + con.getContentLengthLong();
+
+            state.clear();
+            state.setProperty(KEY_URL, url.toString());
+            state.setProperty(KEY_LENGTH, Long.toString(length));
+            if (con.getHeaderField("ETag") != null)
+                state.setProperty(KEY_ETAG, con.getHeaderField("ETag"));
+            if (con.getHeaderField("Last-Modified") != null)
+                state.setProperty(KEY_LAST_MODIFIED, con.getHeaderField("Last-Modified"));
+
+            try (InputStream in = con.getInputStream();
+                 FileChannel out = FileChannel.open(part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                out.truncate(offset);
+                offset = receive(in, out, offset, state);
+            }
+            if (length < 0)
+                length = offset;
+        }
+
+        verify(offset, length);
+        Files.moveAtomically(part.toPath(), target.toPath());
+        meta.delete();
+        return new DownloadResult(target, offset, System.nanoTime() - start);
+    }
+
+    private static int status(URLConnection con) throws IOException {
+        return con instanceof HttpURLConnection ? ((HttpURLConnection) con).getResponseCode() : HttpURLConnection.HTTP_OK;
+    }
+
+    /**
+     * Returns the first byte of a partial response ("Content-Range: bytes 100-199/200"), or -1 if it is missing or 
+     * malformed. 
+     */
+    private static long rangeStart(URLConnection con) {
+        String range = con.getHeaderField("Content-Range");
+        if (range == null || !range.startsWith("bytes ") || range.indexOf('-') == -1)
+            return -1;
+        return parseLong(range.substring("bytes ".length(), range.indexOf('-')).trim(), -1);
+    }
+
+    private Properties loadState() throws IOException {
+        Properties state = new Properties();
+        if (part.isFile() && meta.isFile()) {
+            try (Reader reader = java.nio.file.Files.newBufferedReader(meta.toPath(), StandardCharsets.UTF_8)) {
+                state.load(reader);
+            } catch (IllegalArgumentException e) {
+                state.clear();
+            }
+        }
+        return state;
+    }
+
+    private long resumeOffset(Properties state) {
+        if (!url.toString().equals(state.getProperty(KEY_URL)))
+            return 0;
+        long offset = parseLong(state.getProperty(KEY_OFFSET), 0);
+        return Math.max(0, Math.min(offset, part.length()));
+    }
+
+    /**
+     * Stream the response into the part file, forcing it to disk and recording the offset in the sidecar every 
+     * {@link #CHECKPOINT_INTERVAL} bytes. 
+     */
+    private long receive(InputStream in, FileChannel out, long offset, Properties state) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(in);
+        ByteBuffer buffer = ByteBuffer.allocate(Files.TRANSFER_BUFFER_SIZE);
+        long checkpoint = offset;
+        saveState(state, offset);
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                offset += out.write(buffer, offset);
+            }
+            buffer.clear();
+            if (offset - checkpoint >= CHECKPOINT_INTERVAL) {
+                out.force(false);
+                saveState(state, offset);
+                checkpoint = offset;
+            }
+        }
+        out.force(false);
+        saveState(state, offset);
+        return offset;
+    }
+
+    private void saveState(Properties state, long offset) throws IOException {
+        state.setProperty(KEY_OFFSET, Long.toString(offset));
+        try (Writer writer = java.nio.file.Files.newBufferedWriter(meta.toPath(), StandardCharsets.UTF_8)) {
+            state.store(writer, null);
+        }
+    }
+
+    private void verify(long size, long length) throws IOException {
+        long wanted = expectedSize >= 0 ? expectedSize : length;
+        if (wanted >= 0 && size != wanted) {
+            discard();
+            throw new IOException("Size mismatch for " + url + ": expected " + wanted + " bytes, got " + size);
+        }
+        if (sha256 != null) {
+            String actual = Files.sha256(part.toPath());
+            if (!actual.equalsIgnoreCase(sha256)) {
+                discard();
+                throw new IOException("SHA-256 mismatch for " + url + ": expected " + sha256 + ", got " + actual);
+            }
+        }
+    }
+
+    private void discard() {
+        part.delete();
+        meta.delete();
+    }
+
+    private static long parseLong(String value, long fallback) {
+        if (value == null)
+            return fallback;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of {@link Files#syncTree(Path, Path, boolean, boolean)}: what was copied, skipped as unchanged and 
+ * deleted, what failed and how long it took. 
+ */
+public class SyncReport {
+
+    private final long filesCopied;
+    private final long bytesCopied;
+    private final long filesSkipped;
+    private final long bytesSkipped;
+    private final long deleted;
+    private final Map<Path, IOException> failures;
+    private final long elapsedNanos;
+
+    SyncReport(long filesCopied, long bytesCopied, long filesSkipped, long bytesSkipped, long deleted,
+            Map<Path, IOException> failures, long elapsedNanos) {
+        this.filesCopied = filesCopied;
+        this.bytesCopied = bytesCopied;
+        this.filesSkipped = filesSkipped;
+        this.bytesSkipped = bytesSkipped;
+        this.deleted = deleted;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the number of files that were new or changed and were copied
+     */
+    public long getFilesCopied() {
+        return filesCopied;
+    }
+
+    /**
+     * @return the total size of the copied files
+     */
+    public long getBytesCopied() {
+        return bytesCopied;
+    }
+
+    /**
+     * @return the number of files that were already up to date
+     */
+    public long getFilesSkipped() {
+        return filesSkipped;
+    }
+
+    /**
+     * @return the total size of the files that were already up to date
+     */
+    public long getBytesSkipped() {
+        return bytesSkipped;
+    }
+
+    /**
+     * @return the number of files and directories deleted from the target because they are not in the source
+     */
+    public long getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return the paths that could not be read, copied or deleted, with the reason
+     */
+    public Map<Path, IOException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return true if nothing failed
+     */
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @return the time the synchronization took, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return filesCopied + " files (" + bytesCopied + " bytes) copied, " + filesSkipped + " files (" + bytesSkipped
+                + " bytes) skipped, " + deleted + " deleted, " + failures.size() + " failures in " + elapsedNanos / 1_000_000L + " ms";
+    }
+}
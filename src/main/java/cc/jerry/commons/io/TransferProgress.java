@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the bytes of one download, possibly received on several threads, applies the rate limit and reports 
+ * progress to the listener. Either the listener or the limiter may be null. 
+ */
+class TransferProgress {
+
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(DownloadListener.PROGRESS_INTERVAL_MILLIS);
+
+    private final DownloadListener listener;
+    private final RateLimiter limiter;
+    private final long start = System.nanoTime();
+
+    private long total = -1;
+    private long bytes;
+    private long reportedBytes;
+    private long reportedAt = start;
+
+    TransferProgress(DownloadListener listener, RateLimiter limiter) {
+        this.listener = listener;
+        this.limiter = limiter;
+    }
+
+    synchronized void setTotal(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Wait until the rate limit allows the bytes that were just received, which holds back the next read. 
+     */
+    void acquire(long bytes) throws InterruptedIOException {
+        if (limiter != null)
+            limiter.acquire(bytes);
+    }
+
+    /**
+     * Count bytes that were written and report them if enough time has passed since the previous report. 
+     */
+    void add(long n) {
+        if (listener == null)
+            return;
+        synchronized (this) {
+            bytes += n;
+            long now = System.nanoTime();
+            if (now - reportedAt >= INTERVAL_NANOS)
+                report(now);
+        }
+    }
+
+    synchronized void finish() {
+        if (listener != null)
+            report(System.nanoTime());
+    }
+
+    private void report(long now) {
+        double current = now > reportedAt ? (bytes - reportedBytes) * 1e9 / (now - reportedAt) : 0;
+        double average = now > start ? bytes * 1e9 / (now - start) : 0;
+        reportedBytes = bytes;
+        reportedAt = now;
+        listener.onProgress(bytes, total, current, average);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mirrors a source tree into a target tree. The source is walked once on the calling thread, which creates the 
+ * directories and hands every file to the executor, where it is compared with its counterpart and copied with 
+ * {@link FileChannel#transferTo} if it changed. A file is unchanged if size and modification time match, or, when 
+ * checksums are enabled, if size and SHA-256 match. Copied files get the modification time of their source, so 
+ * the next run skips them. Symbolic links are copied as links, and are unchanged if they point to the same 
+ * target. 
+ */
+class TreeCopier {
+
+    private final ExecutorService executor;
+    private final boolean checksum;
+    private final boolean deleteExtraneous;
+
+    private final LongAdder filesCopied = new LongAdder();
+    private final LongAdder bytesCopied = new LongAdder();
+    private final LongAdder filesSkipped = new LongAdder();
+    private final LongAdder bytesSkipped = new LongAdder();
+    private final LongAdder deleted = new LongAdder();
+    private final Map<Path, IOException> failures = new ConcurrentHashMap<>();
+
+    TreeCopier(ExecutorService executor, boolean checksum, boolean deleteExtraneous) {
+        this.executor = executor;
+        this.checksum = checksum;
+        this.deleteExtraneous = deleteExtraneous;
+    }
+
+    SyncReport run(Path source, Path target) throws IOException {
+        long start = System.nanoTime();
+        List<Future<?>> copies = new ArrayList<>();
+
+        java.nio.file.Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Path copy = target.resolve(source.relativize(dir).toString());
+                try {
+                    if (java.nio.file.Files.isRegularFile(copy, LinkOption.NOFOLLOW_LINKS)
+                            || java.nio.file.Files.isSymbolicLink(copy))
+                        java.nio.file.Files.delete(copy);
+                    java.nio.file.Files.createDirectories(copy);
+                    return FileVisitResult.CONTINUE;
+                } catch (IOException e) {
+                    failures.put(copy, e);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                Path copy = target.resolve(source.relativize(file).toString());
+                copies.add(executor.submit(() -> sync(file, attrs, copy)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                failures.put(file, e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        for (Future<?> copy : copies) {
+            try {
+                copy.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while copying", e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+
+        if (deleteExtraneous)
+            deleteExtraneous(source, target);
+
+        return new SyncReport(filesCopied.sum(), bytesCopied.sum(), filesSkipped.sum(), bytesSkipped.sum(),
+                deleted.sum(), failures, System.nanoTime() - start);
+    }
+
+    private void sync(Path file, BasicFileAttributes attrs, Path copy) {
+        try {
+            if (unchanged(file, attrs, copy)) {
+                filesSkipped.increment();
+                bytesSkipped.add(attrs.size());
+                return;
+            }
+
+            if (attrs.isSymbolicLink()) {
+                java.nio.file.Files.copy(file, copy, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                if (java.nio.file.Files.isDirectory(copy, LinkOption.NOFOLLOW_LINKS))
+                    Files.removeTree(copy);
+                try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(copy, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                             StandardOpenOption.TRUNCATE_EXISTING)) {
+                    long size = in.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+                java.nio.file.Files.setLastModifiedTime(copy, attrs.lastModifiedTime());
+            }
+            filesCopied.increment();
+            bytesCopied.add(attrs.size());
+        } catch (IOException e) {
+            failures.put(file, e);
+        }
+    }
+
+    private boolean unchanged(Path file, BasicFileAttributes attrs, Path copy) throws IOException {
+        BasicFileAttributes existing;
+        try {
+            existing = java.nio.file.Files.readAttributes(copy, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (attrs.isSymbolicLink() || existing.isSymbolicLink()) {
+            return attrs.isSymbolicLink() && existing.isSymbolicLink()
+                    && java.nio.file.Files.readSymbolicLink(file).equals(java.nio.file.Files.readSymbolicLink(copy));
+        }
+        if (!existing.isRegularFile() || existing.size() != attrs.size())
+            return false;
+        if (checksum)
+            return Files.sha256(file).equals(Files.sha256(copy));
+        return existing.lastModifiedTime().equals(attrs.lastModifiedTime());
+    }
+
+    /**
+     * Delete everything in the target that has no counterpart in the source. 
+     */
+    private void deleteExtraneous(Path source, Path target) throws IOException {
+        java.nio.file.Files.walkFileTree(target, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(target) || exists(dir))
+                    return FileVisitResult.CONTINUE;
+                remove(dir);
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!exists(file))
+                    remove(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                failures.put(file, e);
+                return FileVisitResult.CONTINUE;
+            }
+
+            private boolean exists(Path path) {
+                return java.nio.file.Files.exists(source.resolve(target.relativize(path).toString()), LinkOption.NOFOLLOW_LINKS);
+            }
+
+            private void remove(Path path) {
+                DeleteReport report = Files.removeTree(path);
+                deleted.add(report.getFiles() + report.getDirectories());
+                failures.putAll(report.getFailures());
+            }
+        });
+    }
+}
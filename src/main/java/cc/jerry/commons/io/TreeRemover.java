@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes a directory tree on a fork-join pool. Every directory is a task that deletes its files, forks one task 
+ * per subdirectory and deletes itself once all of them completed. Completion is propagated through 
+ * {@link CountedCompleter} instead of joins, so neither the walk nor the wait grows the stack with the depth 
+ * of the tree. Symbolic links are deleted, never followed. 
+ */
+class TreeRemover {
+
+    private final ForkJoinPool pool;
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder directories = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final Map<Path, IOException> failures = new ConcurrentHashMap<>();
+
+    TreeRemover(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    DeleteReport run(Path root) {
+        IOMetrics.Probe probe = IOMetrics.start(IOMetrics.Operation.DELETE, Files.ValueType.PATH, root.toString());
+        DeleteReport report = delete(root);
+        if (report.isSuccess())
+            probe.end(report.getBytes());
+        else
+            probe.fail();
+        return report;
+    }
+
+    private DeleteReport delete(Path root) {
+        long start = System.nanoTime();
+        try {
+            BasicFileAttributes attributes = java.nio.file.Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attributes.isDirectory())
+                pool.invoke(new DirectoryTask(null, root));
+            else
+                deleteFile(root, attributes.size());
+        } catch (NoSuchFileException e) {
+            // nothing to delete
+        } catch (IOException e) {
+            failures.put(root, e);
+        }
+        return new DeleteReport(files.sum(), directories.sum(), bytes.sum(), failures, System.nanoTime() - start);
+    }
+
+    private void deleteFile(Path file, long size) {
+        try {
+            java.nio.file.Files.delete(file);
+            files.increment();
+            bytes.add(size);
+        } catch (NoSuchFileException e) {
+            // already gone
+        } catch (IOException e) {
+            failures.put(file, e);
+        }
+    }
+
+    private class DirectoryTask extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+
+        DirectoryTask(CountedCompleter<?> parent, Path directory) {
+            super(parent);
+            this.directory = directory;
+        }
+
+        @Override
+        public void compute() {
+            try (DirectoryStream<Path> children = java.nio.file.Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = java.nio.file.Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (NoSuchFileException e) {
+                        continue;
+                    } catch (IOException e) {
+                        failures.put(child, e);
+                        continue;
+                    }
+
+                    if (attributes.isDirectory()) {
+                        addToPendingCount(1);
+                        new DirectoryTask(this, child).fork();
+                    } else {
+                        deleteFile(child, attributes.size());
+                    }
+                }
+            } catch (IOException e) {
+                failures.put(directory, e);
+            } catch (DirectoryIteratorException e) {
+                failures.put(directory, e.getCause());
+            }
+            tryComplete();
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            try {
+                java.nio.file.Files.delete(directory);
+                directories.increment();
+            } catch (NoSuchFileException e) {
+                // already gone
+            } catch (IOException e) {
+                failures.put(directory, e);
+            }
+        }
+    }
+}
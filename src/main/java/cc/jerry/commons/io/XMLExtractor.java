@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Pulls the text of selected elements out of an XML document with a StAX reader, in one pass and with memory 
+ * bounded by the nesting depth and the size of the values found. 
+ * <p>
+ * A field is either a tag name, which matches elements with that local name anywhere in the document, a path 
+ * such as "item/title", which matches "title" elements directly inside an "item", or an absolute path such as 
+ * "/rss/channel/title", which must start at the root element. The value of a match is the text directly inside 
+ * the element; text of nested elements is not included. 
+ * <p>
+ * DTDs and external entities are not processed. 
+ */
+public class XMLExtractor {
+
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newFactory();
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    private final List<Field> fields = new ArrayList<>();
+
+    /**
+     * Create an extractor for the given fields. 
+     * 
+     * @param fields tag names or paths, see the class description
+     */
+    public XMLExtractor(Collection<String> fields) {
+        for (String field : fields) {
+            this.fields.add(new Field(field));
+        }
+    }
+
+    /**
+     * Return the text of the first match of each field. Reading stops as soon as every field was found. 
+     * 
+     * @param in an XML document, the encoding is taken from its declaration
+     * @return a map from each field that was found to its text, in the order the fields were given
+     * @throws IOException if the document cannot be read or is not well-formed
+     */
+    public Map<String, String> extract(InputStream in) throws IOException {
+        try {
+            return first(FACTORY.createXMLStreamReader(in));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Return the text of the first match of each field, see {@link #extract(InputStream)}. 
+     * 
+     * @param reader an XML document
+     * @return a map from each field that was found to its text, in the order the fields were given
+     * @throws IOException if the document cannot be read or is not well-formed
+     */
+    public Map<String, String> extract(Reader reader) throws IOException {
+        try {
+            return first(FACTORY.createXMLStreamReader(reader));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Pass the text of every match of every field to the action, in document order, for example the title and 
+     * link of each item of a feed. 
+     * 
+     * @param in     an XML document, the encoding is taken from its declaration
+     * @param action receives the field and the text of each match
+     * @throws IOException if the document cannot be read or is not well-formed
+     */
+    public void extractAll(InputStream in, BiConsumer<String, String> action) throws IOException {
+        try {
+            scan(FACTORY.createXMLStreamReader(in), action, -1);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Map<String, String> first(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> found = new LinkedHashMap<>();
+        scan(reader, (field, text) -> found.putIfAbsent(field, text), fields.size());
+        Map<String, String> ordered = new LinkedHashMap<>();
+        for (Field field : fields) {
+            if (found.containsKey(field.name))
+                ordered.put(field.name, found.get(field.name));
+        }
+        return ordered;
+    }
+
+    /**
+     * Run through the document and report matches. With a limit, each field is reported once and the scan stops 
+     * after that many distinct fields. 
+     */
+    private void scan(XMLStreamReader reader, BiConsumer<String, String> action, int limit) throws XMLStreamException {
+        List<String> stack = new ArrayList<>();
+        Deque<Capture> captures = new ArrayDeque<>();
+        boolean[] done = new boolean[fields.size()];
+        int remaining = limit;
+
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    stack.add(reader.getLocalName());
+                    for (int i = 0; i < fields.size(); i++) {
+                        if (!done[i] && fields.get(i).matches(stack))
+                            captures.push(new Capture(i, stack.size()));
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    for (Capture capture : captures) {
+                        if (capture.depth == stack.size())
+                            capture.text.append(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    while (!captures.isEmpty() && captures.peek().depth == stack.size()) {
+                        Capture capture = captures.pop();
+                        if (limit >= 0) {
+                            if (done[capture.field])
+                                continue;
+                            done[capture.field] = true;
+                            remaining--;
+                        }
+                        action.accept(fields.get(capture.field).name, capture.text.toString());
+                    }
+                    stack.remove(stack.size() - 1);
+                    if (limit >= 0 && remaining == 0)
+                        return;
+                    break;
+                default:
+                    break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static class Field {
+
+        final String name;
+        final String[] path;
+        final boolean absolute;
+
+        Field(String name) {
+            this.name = name;
+            this.absolute = name.startsWith("/");
+            this.path = (absolute ? name.substring(1) : name).split("/");
+        }
+
+        boolean matches(List<String> stack) {
+            if (absolute ? stack.size() != path.length : stack.size() < path.length)
+                return false;
+            int offset = stack.size() - path.length;
+            for (int i = 0; i < path.length; i++) {
+                if (!path[i].equals(stack.get(offset + i)))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private static class Capture {
+
+        final int field;
+        final int depth;
+        final StringBuilder text = new StringBuilder();
+
+        Capture(int field, int depth) {
+            this.field = field;
+            this.depth = depth;
+        }
+    }
+}
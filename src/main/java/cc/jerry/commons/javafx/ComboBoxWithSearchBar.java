@@ -86,44 +86,11 @@ public class ComboBoxWithSearchBar<T> extends ComboBox<T> implements EventHandle
         }
         
         ObservableList<T> list = FXCollections.observableArrayList();
-        ObservableList<T> containList = FXCollections.observableArrayList(); 
-        ObservableList<T> splitList = FXCollections.observableArrayList(); 
-        ObservableList<T> remList = FXCollections.observableArrayList(); 
-        for (int i = 0; i < data.size(); i++) {
-            if(data.get(i).toString().toLowerCase().startsWith(
-              ComboBoxWithSearchBar.this.getEditor().getText().toLowerCase())) {
-                list.add(data.get(i));
-                continue; 
-            }
-            else if (data.get(i).toString().toLowerCase().contains(
-              ComboBoxWithSearchBar.this.getEditor().getText().toLowerCase())) {
-            	containList.add(data.get(i)); 
-            	continue; 
-            }
-            else if (data.get(i).toString().toLowerCase().contains(" ")) {
-            	boolean proceed = true; 
-            	
-            	for (String subString : ComboBoxWithSearchBar.this.getEditor().getText().toLowerCase().split(" ")) {
-            		if (!data.get(i).toString().toLowerCase().contains(subString)) {
-            			proceed = false; 
-            			break; 
-            		}
-            	}
-            	
-            	if (proceed) {
-            		splitList.add(data.get(i)); 
-                	continue; 
-            	}
-            }
-            remList.add(data.get(i)); 
-        }
+        SearchFilter.order(data, getEditor().getText(), list); 
         
         String t = getEditor().getText(); 
         
         setItems(list);
-        getItems().addAll(containList); 
-        getItems().addAll(splitList); 
-        getItems().addAll(remList); 
         getEditor().setText(t);
         if(!moveCaretToPos) {
             caretPos = -1;
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.javafx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ordering used by {@link ComboBoxWithSearchBar} while the user types, kept free of JavaFX so it can be 
+ * used and measured without a running toolkit. 
+ */
+class SearchFilter {
+
+    /**
+     * Append the items to "out" ordered by how well they match the search text: first the items starting with 
+     * the text, then the items containing it, then the items containing every space-separated word of it, and 
+     * finally all the others. The comparison ignores case. 
+     * 
+     * @param data the items to order
+     * @param text the search text
+     * @param out  the list the ordered items are added to
+     */
+    static <T> void order(List<T> data, String text, List<? super T> out) {
+        String search = text.toLowerCase();
+        String[] words = search.split(" ");
+
+        List<T> list = new ArrayList<>();
+        List<T> containList = new ArrayList<>();
+        List<T> splitList = new ArrayList<>();
+        List<T> remList = new ArrayList<>();
+        for (T item : data) {
+            String name = item.toString().toLowerCase();
+            if (name.startsWith(search)) {
+                list.add(item);
+                continue;
+            }
+            else if (name.contains(search)) {
+                containList.add(item);
+                continue;
+            }
+            else if (name.contains(" ")) {
+                boolean proceed = true;
+
+                for (String subString : words) {
+                    if (!name.contains(subString)) {
+                        proceed = false;
+                        break;
+                    }
+                }
+
+                if (proceed) {
+                    splitList.add(item);
+                    continue;
+                }
+            }
+            remList.add(item);
+        }
+
+        out.addAll(list);
+        out.addAll(containList);
+        out.addAll(splitList);
+        out.addAll(remList);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A language file compiled into a binary table that is memory-mapped instead of parsed. 
+ * <p>
+ * The table starts with a header (magic number, entry count, and the size and modification time of the language 
+ * file it was compiled from, so a changed file is noticed even within the resolution of file times), followed by one record per entry sorted by the 
+ * hash code of the key (hash, key offset, key length, value offset, value length), followed by all keys and 
+ * values as UTF-8 in one blob. A lookup binary searches the records by hash and decodes the key and the value the 
+ * first time they are needed; decoded Strings are kept, so later lookups of the same key do not allocate. 
+ */
+final class CompiledBundle extends AbstractMap<String, String> {
+	
+	/**
+	 * Appended to the name of a language file to get the name of its compiled table. 
+	 */
+	static final String EXTENSION = ".bin";
+	
+	private static final int MAGIC = 0x4A4C4232; // "JLB2"
+	private static final int HEADER_SIZE = 24;
+	private static final int RECORD_SIZE = 20;
+	
+	private final MappedByteBuffer buffer;
+	private final int size;
+	private final long sourceSize;
+	private final long sourceModified;
+	private final String[] keys;
+	private final String[] values;
+	
+	private CompiledBundle(MappedByteBuffer buffer) throws IOException {
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a compiled language file");
+		this.buffer = buffer;
+		this.size = buffer.getInt(4);
+		this.sourceSize = buffer.getLong(8);
+		this.sourceModified = buffer.getLong(16);
+		if (size < 0 || HEADER_SIZE + (long) size * RECORD_SIZE > buffer.capacity())
+			throw new IOException("Truncated compiled language file");
+		this.keys = new String[size];
+		this.values = new String[size];
+	}
+	
+	/**
+	 * Map a compiled table into memory. 
+	 */
+	static CompiledBundle open(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return new CompiledBundle(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+	
+	/**
+	 * Returns true if the table was compiled from a language file with the given size and modification time. 
+	 */
+	boolean isCompiledFrom(long size, long modified) {
+		return sourceSize == size && sourceModified == modified;
+	}
+	
+	/**
+	 * Write the entries of a language file as a compiled table. The table is written to a temporary file first and 
+	 * moved over the target, so a table being read is never seen half written. The size and modification time of 
+	 * the language file must be taken before it was read, so a change made while compiling is noticed later. 
+	 */
+	static void compile(Map<String, String> entries, File target, long sourceSize, long sourceModified) throws IOException {
+		String[] sorted = entries.keySet().toArray(new String[0]);
+		Arrays.sort(sorted, Comparator.comparingInt(String::hashCode).thenComparing(Comparator.naturalOrder()));
+		
+		byte[][] blob = new byte[sorted.length * 2][];
+		int[] records = new int[sorted.length * 5];
+		int offset = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			byte[] key = sorted[i].getBytes(StandardCharsets.UTF_8);
+			byte[] value = entries.get(sorted[i]).getBytes(StandardCharsets.UTF_8);
+			blob[i * 2] = key;
+			blob[i * 2 + 1] = value;
+			records[i * 5] = sorted[i].hashCode();
+			records[i * 5 + 1] = offset;
+			records[i * 5 + 2] = key.length;
+			records[i * 5 + 3] = offset + key.length;
+			records[i * 5 + 4] = value.length;
+			offset += key.length + value.length;
+		}
+		int blobStart = HEADER_SIZE + sorted.length * RECORD_SIZE;
+		
+		Path tmp = Files.createTempFile(target.getAbsoluteFile().getParentFile().toPath(), target.getName(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(sorted.length);
+				out.writeLong(sourceSize);
+				out.writeLong(sourceModified);
+				for (int i = 0; i < records.length; i++)
+					out.writeInt(i % 5 == 1 || i % 5 == 3 ? blobStart + records[i] : records[i]);
+				for (byte[] bytes : blob)
+					out.write(bytes);
+			}
+			cc.jerry.commons.io.Files.moveAtomically(tmp, target.toPath());
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+	
+	@Override
+	public String get(Object key) {
+		if (!(key instanceof String))
+			return null;
+		int index = indexOf((String) key);
+		return index < 0 ? null : value(index);
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && indexOf((String) key) >= 0;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		return new AbstractSet<Map.Entry<String, String>>() {
+			@Override
+			public Iterator<Map.Entry<String, String>> iterator() {
+				return new Iterator<Map.Entry<String, String>>() {
+					private int next;
+					
+					@Override
+					public boolean hasNext() {
+						return next < size;
+					}
+					
+					@Override
+					public Map.Entry<String, String> next() {
+						if (next >= size)
+							throw new NoSuchElementException();
+						int index = next++;
+						return new SimpleImmutableEntry<>(key(index), value(index));
+					}
+				};
+			}
+			
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+	
+	private int indexOf(String key) {
+		int hash = key.hashCode();
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midHash = hash(mid);
+			if (midHash < hash)
+				low = mid + 1;
+			else
+				high = mid - 1;
+		}
+		for (int i = low; i < size && hash(i) == hash; i++) {
+			if (key(i).equals(key))
+				return i;
+		}
+		return -1;
+	}
+	
+	private int hash(int index) {
+		return buffer.getInt(HEADER_SIZE + index * RECORD_SIZE);
+	}
+	
+	private String key(int index) {
+		String key = keys[index];
+		if (key == null)
+			keys[index] = key = decode(HEADER_SIZE + index * RECORD_SIZE + 4);
+		return key;
+	}
+	
+	private String value(int index) {
+		String value = values[index];
+		if (value == null)
+			values[index] = value = decode(HEADER_SIZE + index * RECORD_SIZE + 12);
+		return value;
+	}
+	
+	/**
+	 * Decode the UTF-8 String whose offset and length are stored at the given position. Strings have only final 
+	 * fields, so caching them without synchronization is safe: another thread sees either null or the whole String. 
+	 */
+	private String decode(int position) {
+		int offset = buffer.getInt(position);
+		int length = buffer.getInt(position + 4);
+		byte[] bytes = new byte[length];
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(offset);
+		slice.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+}
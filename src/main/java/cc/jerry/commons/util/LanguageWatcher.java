@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.util;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a language folder on a daemon thread and asks a {@link Localization} to reload the files that changed. 
+ * Events arriving within a short delay of each other are handled together, so an editor saving a file in several 
+ * steps causes one reload. 
+ */
+class LanguageWatcher implements Runnable {
+	
+	private static final long SETTLE_MILLIS = 100;
+	
+	private final Localization localization;
+	private final String extension;
+	private final WatchService service;
+	private final Thread thread;
+	
+	LanguageWatcher(Localization localization, Path folder, String extension) throws IOException {
+		this.localization = localization;
+		this.extension = extension;
+		this.service = folder.getFileSystem().newWatchService();
+		try {
+			folder.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, 
+					StandardWatchEventKinds.ENTRY_DELETE);
+		} catch (IOException e) {
+			service.close();
+			throw e;
+		}
+		thread = new Thread(this, "Localization watcher: " + folder);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				Set<String> changed = new HashSet<>();
+				boolean overflow = false;
+				do {
+					overflow |= collect(key, changed);
+					key.reset();
+				} while ((key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+				
+				if (overflow)
+					localization.reload(null);
+				else if (!changed.isEmpty())
+					localization.reload(changed);
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// stopped
+		}
+	}
+	
+	/**
+	 * Add the names of the changed language files to the set, and return true if events were lost. 
+	 */
+	private boolean collect(WatchKey key, Set<String> changed) {
+		boolean overflow = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+			} else {
+				String name = event.context().toString();
+				if (name.endsWith(extension))
+					changed.add(name);
+			}
+		}
+		return overflow;
+	}
+	
+	void close() {
+		try {
+			service.close();
+		} catch (IOException e) {
+			System.out.println("[WARNING] Exception caught: " + e.toString());
+		}
+		thread.interrupt();
+	}
+	
+}
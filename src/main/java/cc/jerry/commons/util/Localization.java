@@ -16,35 +16,72 @@
 
 package cc.jerry.commons.util;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
-import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
+/**
+ * Localized Strings loaded from a folder of language files. 
+ * <p>
+ * Each instance holds its own immutable lookup table, so lookups take no locks and any number of threads can read 
+ * at once. The static methods ("get(key)", "langList()" and "getAppLanguage()") use the default instance, which is 
+ * the first one constructed unless another one is made the default with "setDefault(localization)". 
+ * <p>
+ * The folder is listed once when the instance is constructed, and only the file of the application language is read 
+ * right away. The other languages are read the first time they are needed, or in the background on an executor 
+ * given to the constructor, so one instance can also serve several languages at once with "lookup(locale, key)". A key missing for a locale falls back to the less specific locales and then to the default 
+ * language, for example "de-CH", then "de", then "en-US". The fallbacks of each locale are collected the first time 
+ * the locale is used, and a lookup reads them in that order until one has the key. 
+ * <p>
+ * Language files can also be packaged with the application and read from the class path, see 
+ * "fromClasspath(resourceFolder, defaultLang, lang, fileSuffix)". 
+ * <p>
+ * Language files compiled with "compile(langFolder, fileSuffix)" are memory-mapped instead of parsed, and their 
+ * Strings are decoded the first time they are looked up. 
+ * <p>
+ * Strings can be message patterns with placeholders such as "{0} files", formatted with "get(key, args)". Each 
+ * pattern is parsed once per language and kept, so formatting it again does not parse it again. 
+ * <p>
+ * After "watch()", language files that change on disk are loaded again in the background. The new tables replace 
+ * the old ones all at once, so a lookup sees either the old or the new Strings and never waits for the reload. 
+ */
 public class Localization {
 	
 	private static final String systemLanguage = Locale.getDefault().toLanguageTag();
-//	private static Thread listFolderThread;
-	private static boolean loadedFolders;
-	private static String appLanguage;
-	private static String[] langFiles;
-	private static Properties localFile = new Properties();
-//	private static Locale[] allLocales;
-	private static String langExtension;
+	private static volatile Localization defaultInstance;
+	/**
+	 * The resource listing the language files of a folder on the class path, see "writeIndex(langFolder, fileSuffix)". 
+	 */
+	public static final String INDEX_NAME = "languages.index";
+	private static final ResourceBundle.Control candidates = ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_DEFAULT);
 	
-//	public static void setAllLocales(Locale[] allLocales) {
-//		Localization.allLocales = allLocales;
-//	}
+	private final String appLanguage;
+	private final Locale appLocale;
+	private final String defaultLanguage;
+	private final String langFolder;
+	private final String langExtension;
+	private final ClassLoader resources;
+	private volatile Snapshot snapshot;
+	private LanguageWatcher watcher;
 	
 	/**
 	 * Instantiate the localization class with a specified localization folder which contains all the localization files and is located inside the source folder, 
@@ -52,87 +89,72 @@ public class Localization {
 	 * the application language are both Strings, but they have to be specified language tags like "en-US". 
 	 * <p>
 	 * Run this as soon as the application is started (the main() method in the main class) if you wish to use this as your localization library, so you can use "get(key)" 
-	 * to retrieve the String in the desired language. 
+	 * to retrieve the String in the desired language. Only the first instance constructed becomes the default used by "get(key)"; 
+	 * to switch the language of the static methods later, construct the new instance and pass it to "setDefault(localization)". 
 	 * <p>
-	 * The default language will be used when the specified application language is not available. 
+	 * The default language will be used when the specified application language is not available. The other languages in the folder are 
+	 * loaded the first time they are used. 
 	 * 
 	 * @param langFolder a String with the location of the folder containing all the localization files (format: "/package/", example: "/cc/jerry/commons/local/localizations/")
 	 * @param defaultLang a String of the language tag for the default language, this specified language is used when the language in the "lang" parameter is not supported (for example: "en-US") 
 	 * @param lang 	      a String of the language qtag for the language of the application, this specified language is used to retrieve the localization file for this language (for example: "zh-CN")
 	 */
 	public Localization(String langFolder, String defaultLang, String lang, String fileSuffix) {
-		if (!fileSuffix.contains(" ") && fileSuffix.startsWith(".")) {
-			appLanguage = lang;
-			langExtension = fileSuffix;
-
-			if (!langFolder.endsWith(File.separator))
-				langFolder = langFolder + File.separator;
-
-			/*
-			final String localFolder = langFolder;
-
-			listFolderThread = new Thread(() -> {
-				System.out.println("Thread Started Localization: " + Thread.currentThread().getName());
-
-
-				List<String> files = new ArrayList<>();
-
-				for (Locale locale : allLocales) {
-					if (defaultLang.length() >= 5) {
-						if (defaultLang.contains("-")) {
-							try {
-								new BufferedReader(new InputStreamReader(new FileInputStream(new File(localFolder + locale.getLanguage() + "-" + locale.getCountry() + fileSuffix)), StandardCharsets.UTF_8)).close();
-								files.add(locale.getLanguage() + "-" + locale.getCountry() + fileSuffix);
-							} catch (NullPointerException | FileNotFoundException e) {
-								//no action needed
-							} catch (IOException e) {
-								System.err.println("[ERROR] " + e.toString());
-							}
-						}
-						else if (defaultLang.contains("_")) {
-							try {
-								new BufferedReader(new InputStreamReader(new FileInputStream(new File(localFolder + locale.getLanguage() + "_" + locale.getCountry() + fileSuffix)), StandardCharsets.UTF_8)).close();
-								files.add(locale.getLanguage() + "_" + locale.getCountry() + fileSuffix);
-							} catch (NullPointerException | FileNotFoundException e) {
-								//no action needed
-							} catch (IOException e) {
-								System.err.println("[ERROR] " + e.toString());
-							}
-						}
-						else {
-							System.err.println("{ERROR] " + new IllegalArgumentException("Language tag format not supported: " + defaultLang + " (valid examples: en-US, en_US)").toString());
-						}
-					}
-				}
-
-				langFiles = files.toArray(new String[0]);
+		this(langFolder, defaultLang, lang, fileSuffix, null);
+	}
+	
+	/**
+	 * Instantiate the localization class with a specified localization folder which contains all the localization files and is located inside the source folder, 
+	 * a specified file type, the default language, and the language of the application. The default language and 
+	 * the application language are both Strings, but they have to be specified language tags like "en-US". 
+	 * <p>
+	 * Run this as soon as the application is started (the main() method in the main class) if you wish to use this as your localization library, so you can use "get(key)" 
+	 * to retrieve the String in the desired language. Only the first instance constructed becomes the default used by "get(key)"; 
+	 * to switch the language of the static methods later, construct the new instance and pass it to "setDefault(localization)". 
+	 * <p>
+	 * The default language will be used when the specified application language is not available. The other languages in the folder are 
+	 * loaded in the background on the given executor, or the first time they are used if it is null. 
+	 * 
+	 * @param langFolder a String with the location of the folder containing all the localization files (format: "/package/", example: "/cc/jerry/commons/local/localizations/")
+	 * @param defaultLang a String of the language tag for the default language, this specified language is used when the language in the "lang" parameter is not supported (for example: "en-US") 
+	 * @param lang 	      a String of the language qtag for the language of the application, this specified language is used to retrieve the localization file for this language (for example: "zh-CN")
+	 * @param fileSuffix  a String with the file suffix of the localization files, including the "." (for example: ".lang")
+	 * @param loader      the executor the other languages are loaded on, or null to load them when they are first used
+	 */
+	public Localization(String langFolder, String defaultLang, String lang, String fileSuffix, Executor loader) {
+		this(null, langFolder, defaultLang, lang, fileSuffix, loader);
+	}
+	
+	/**
+	 * Read the language files from a folder, or from a folder on the class path if "resources" is not null. 
+	 */
+	private Localization(ClassLoader resources, String langFolder, String defaultLang, String lang, String fileSuffix, Executor loader) {
+		this.resources = resources;
+		langExtension = fileSuffix;
+		defaultLanguage = tag(defaultLang);
 
-				 */
-				/*
-				loadedFolders = true;
-				System.out.println("Thread Ended: " + Thread.currentThread().getName());
-//				Thread.currentThread().interrupt();
-			});
+		if (!fileSuffix.contains(" ") && fileSuffix.startsWith(".")) {
+			String language = lang;
+			Map<String, String> table = Map.of();
 
-			if (!loadedFolders)
-				listFolderThread.start();
-			*/
+			String separator = resources == null ? File.separator : "/";
+			if (!langFolder.endsWith(separator))
+				langFolder = langFolder + separator;
+			this.langFolder = langFolder;
 
-			langFiles = new File(langFolder).list();
+			String[] langFiles = resources == null ? new File(langFolder).list((dir, name) -> name.endsWith(fileSuffix)) : readIndex(resources, langFolder);
 
 			if (langFiles == null)
-				throw new IllegalArgumentException("Unable to locate folder: " + langFolder);
-
-			System.out.println("[INFO] Loaded languages: " + Arrays.toString(langFiles).replaceAll("\\.lang", ""));
+				throw new IllegalArgumentException(resources == null ? "Unable to locate folder: " + langFolder : "Unable to locate language index: " + langFolder + INDEX_NAME);
 
 			try {
-				localFile.load(new InputStreamReader(new FileInputStream(new File(langFolder + lang + fileSuffix)), StandardCharsets.UTF_8));
+				table = read(lang + fileSuffix);
 			} catch (FileNotFoundException e) {
 				System.out.println("[WARNING] Language " + lang + " is not available, Loading default language...");
 
+				language = defaultLang;
 				try {
-					appLanguage = defaultLang;
-					localFile.load(new InputStreamReader(new FileInputStream(new File(langFolder + defaultLang + fileSuffix)), StandardCharsets.UTF_8));
+					table = read(defaultLang + fileSuffix);
 				} catch (FileNotFoundException e1) {
 					System.err.println("[ERROR] Default language " + defaultLang + " is not available");
 					throw new IllegalArgumentException("Default language file not available: " + langFolder + defaultLang + fileSuffix);
@@ -148,7 +170,29 @@ public class Localization {
 			} catch (IOException e1) {
 				System.out.println("[WARNING] Exception caught: " + e1.toString());
 			}
+
+			appLanguage = language;
+
+			Map<String, Table> tables = new HashMap<>();
+			tables.put(tag(language), new Table(language + fileSuffix, table));
+			for (String file : langFiles) {
+				if (!file.endsWith(fileSuffix) || file.equals(language + fileSuffix))
+					continue;
+				Table other = new Table(file, () -> read(file));
+				if (tables.putIfAbsent(tag(file.substring(0, file.length() - fileSuffix.length())), other) == null && loader != null)
+					loader.execute(other::tryLoad);
+			}
+			snapshot = new Snapshot(langFiles, tables);
 		}
+		else {
+			appLanguage = lang;
+			this.langFolder = langFolder;
+			snapshot = new Snapshot(new String[0], Map.of());
+		}
+
+		appLocale = Locale.forLanguageTag(tag(appLanguage));
+
+		setDefaultIfAbsent(this);
 	}
 	
 	/**
@@ -156,7 +200,8 @@ public class Localization {
 	 * a specified file type, and the default language. The default language is a String, but it has to be a specified language tag like "en-US". 
 	 * <p>
 	 * Run this as soon as the application is started (the main() method in the main class) if you wish to use this as your localization library, so you can use "get(key)" 
-	 * to retrieve the String in the desired language. 
+	 * to retrieve the String in the desired language. Only the first instance constructed becomes the default used by "get(key)"; 
+	 * to switch the language of the static methods later, construct the new instance and pass it to "setDefault(localization)". 
 	 * <p>
 	 * Running this will use the user's system language as the application language, but the default language will be used when user's system language is not supported. 
 	 * 
@@ -165,30 +210,196 @@ public class Localization {
 	 * @param defaultLang a String of the language tag for the default language, this specified language is used when the language in the "lang" parameter is not supported (for example: "en-US") 
 	 */
 	public Localization(String localFolder, String defaultLang, String fileSuffix) {
-		new Localization(localFolder, defaultLang, systemLanguage, fileSuffix);
+		this(localFolder, defaultLang, systemLanguage, fileSuffix);
+	}
+	
+	/**
+	 * Instantiate the localization class with language files packaged with the application, for example in its JAR. 
+	 * Like the constructors, this makes the new instance the default only if there is none yet, see "setDefault(localization)". 
+	 * The folder must contain an index listing the language files, written with "writeIndex(langFolder, fileSuffix)" 
+	 * when the application is built, so the files can be found without scanning the class path. 
+	 * 
+	 * @param resourceFolder a String with the location of the folder on the class path (example: "/cc/jerry/commons/local/localizations/")
+	 * @param defaultLang    a String of the language tag for the default language, this specified language is used when the language in the "lang" parameter is not supported (for example: "en-US")
+	 * @param lang           a String of the language tag for the language of the application (for example: "zh-CN")
+	 * @param fileSuffix     a String with the file suffix of the localization files, including the "." (for example: ".lang")
+	 * @return the localization
+	 */
+	public static Localization fromClasspath(String resourceFolder, String defaultLang, String lang, String fileSuffix) {
+		return fromClasspath(Localization.class.getClassLoader(), resourceFolder, defaultLang, lang, fileSuffix, null);
+	}
+	
+	/**
+	 * Instantiate the localization class with language files packaged with the application, read with the given 
+	 * class loader. See "fromClasspath(resourceFolder, defaultLang, lang, fileSuffix)". 
+	 * 
+	 * @param classLoader    the class loader to read the language files with
+	 * @param resourceFolder a String with the location of the folder on the class path (example: "/cc/jerry/commons/local/localizations/")
+	 * @param defaultLang    a String of the language tag for the default language (for example: "en-US")
+	 * @param lang           a String of the language tag for the language of the application (for example: "zh-CN")
+	 * @param fileSuffix     a String with the file suffix of the localization files, including the "." (for example: ".lang")
+	 * @param loader         the executor the other languages are loaded on, or null to load them when they are first used
+	 * @return the localization
+	 */
+	public static Localization fromClasspath(ClassLoader classLoader, String resourceFolder, String defaultLang, String lang, String fileSuffix, Executor loader) {
+		if (classLoader == null)
+			throw new NullPointerException("classLoader");
+		String folder = resourceFolder.startsWith("/") ? resourceFolder.substring(1) : resourceFolder;
+		return new Localization(classLoader, folder, defaultLang, lang, fileSuffix, loader);
+	}
+	
+	/**
+	 * Make the given instance the one used by the static methods. 
+	 * 
+	 * @param localization the localization to use by default
+	 */
+	public static void setDefault(Localization localization) {
+		if (localization == null)
+			throw new NullPointerException("localization");
+		defaultInstance = localization;
+	}
+	
+	/**
+	 * Returns the instance used by the static methods. 
+	 * 
+	 * @return the default localization, or null if none was constructed yet
+	 */
+	public static Localization getDefault() {
+		return defaultInstance;
+	}
+	
+	private static synchronized void setDefaultIfAbsent(Localization localization) {
+		if (defaultInstance == null)
+			defaultInstance = localization;
 	}
 	
 	/**
-	 * Retrieve a String with the given key. The String will be in the language specified during the instantiation of this class. 
+	 * Retrieve a String with the given key from the default localization. The String will be in the language specified during the instantiation of that instance. 
 	 * 
 	 * @param key the key or identifier used to retrieve the String. 
-	 * @return the String retrieved with the key. 
+	 * @return the String retrieved with the key, or the key itself if there is none. 
 	 */
 	public static String get(String key) {
-		if (localFile.containsKey(key))
-			return localFile.getProperty(key); 
-		else 
-			return key; 
+		Localization localization = defaultInstance;
+		return localization == null ? key : localization.lookup(key);
+	}
+	
+	/**
+	 * Retrieve a String with the given key from this localization, in its language or the fallbacks of it, like 
+	 * "lookup(locale, key)" with the locale of "getLanguage()". 
+	 * 
+	 * @param key the key or identifier used to retrieve the String. 
+	 * @return the String retrieved with the key, or the key itself if there is none. 
+	 */
+	public String lookup(String key) {
+		return lookup(appLocale, key);
+	}
+	
+	/**
+	 * Retrieve a String with the given key in the given language from the default localization. 
+	 * 
+	 * @param locale the language to retrieve the String in
+	 * @param key    the key or identifier used to retrieve the String. 
+	 * @return the String retrieved with the key, or the key itself if there is none in the language or its fallbacks. 
+	 */
+	public static String get(Locale locale, String key) {
+		Localization localization = defaultInstance;
+		return localization == null ? key : localization.lookup(locale, key);
+	}
+	
+	/**
+	 * Retrieve a String with the given key in the given language. If the language has no such String, the less 
+	 * specific languages and then the default language are tried, for example "de-CH", then "de", then "en-US". 
+	 * 
+	 * @param locale the language to retrieve the String in
+	 * @param key    the key or identifier used to retrieve the String. 
+	 * @return the String retrieved with the key, or the key itself if there is none in the language or its fallbacks. 
+	 */
+	public String lookup(Locale locale, String key) {
+		String value = find(resolve(snapshot, locale), key);
+		return value == null ? key : value;
+	}
+	
+	/**
+	 * Retrieve a String with the given key from the default localization and fill in its placeholders, like 
+	 * {@link java.text.MessageFormat}: "{0} of {1}" with the arguments 3 and 10 gives "3 of 10". 
+	 * 
+	 * @param key  the key or identifier used to retrieve the message pattern. 
+	 * @param args the values of the placeholders
+	 * @return the formatted String, or the key formatted as a pattern if there is none. 
+	 */
+	public static String get(String key, Object... args) {
+		Localization localization = defaultInstance;
+		return localization == null ? MessageTemplate.compile(key, Locale.getDefault()).format(args) : localization.lookup(key, args);
+	}
+	
+	/**
+	 * Retrieve a String with the given key in the given language from the default localization and fill in its placeholders. 
+	 * 
+	 * @param locale the language to retrieve the String in
+	 * @param key    the key or identifier used to retrieve the message pattern. 
+	 * @param args   the values of the placeholders
+	 * @return the formatted String, or the key formatted as a pattern if there is none in the language or its fallbacks. 
+	 */
+	public static String get(Locale locale, String key, Object... args) {
+		Localization localization = defaultInstance;
+		return localization == null ? MessageTemplate.compile(key, locale).format(args) : localization.lookup(locale, key, args);
+	}
+	
+	/**
+	 * Retrieve a String with the given key from this localization and fill in its placeholders, like 
+	 * {@link java.text.MessageFormat}. The pattern is parsed the first time it is used and kept. 
+	 * 
+	 * @param key  the key or identifier used to retrieve the message pattern. 
+	 * @param args the values of the placeholders
+	 * @return the formatted String, or the key formatted as a pattern if there is none. 
+	 */
+	public String lookup(String key, Object... args) {
+		return lookup(appLocale, key, args);
+	}
+	
+	/**
+	 * Retrieve a String with the given key in the given language and fill in its placeholders. The pattern is 
+	 * parsed the first time it is used in the language and kept. 
+	 * 
+	 * @param locale the language to retrieve the String in
+	 * @param key    the key or identifier used to retrieve the message pattern. 
+	 * @param args   the values of the placeholders
+	 * @return the formatted String, or the key formatted as a pattern if there is none in the language or its fallbacks. 
+	 */
+	public String lookup(Locale locale, String key, Object... args) {
+		Snapshot current = snapshot;
+		Map<String, MessageTemplate> templates = current.localeTemplates.get(locale);
+		if (templates == null)
+			templates = current.localeTemplates.computeIfAbsent(locale, l -> new ConcurrentHashMap<>());
+		MessageTemplate template = templates.get(key);
+		if (template == null) {
+			String pattern = find(resolve(current, locale), key);
+			// missing keys are not kept, the cache only grows with the language files
+			if (pattern == null)
+				return MessageTemplate.compile(key, locale).format(args);
+			template = templates.computeIfAbsent(key, k -> MessageTemplate.compile(pattern, locale));
+		}
+		return template.format(args);
 	}
 	
 	/**
-	 * Returns a String array with a list of languages tags ("en-US") that matches the localization files in the folder specified during the class instantiation. 
+	 * Returns a String array with a list of languages tags ("en-US") that matches the localization files in the folder specified during the instantiation of the default localization. 
 	 * 
 	 * @return an array of language tags in String
 	 */
 	public static String[] langList() {
+		return requireDefault().languages();
+	}
+	
+	/**
+	 * Returns a String array with a list of languages tags ("en-US") that matches the localization files in the folder of this localization. 
+	 * 
+	 * @return an array of language tags in String
+	 */
+	public String[] languages() {
 		List<String> list = new ArrayList<>();
-		for (String item : langFiles) {
+		for (String item : snapshot.langFiles) {
 			list.add(item.replace(langExtension, ""));
 		}
 
@@ -198,14 +409,352 @@ public class Localization {
 	}
 
 	//Getters
-//	public static boolean isListFolderThreadAlive() {
-//		if (listFolderThread == null) throw new NullPointerException("Class not initialized! ");
-//		else return listFolderThread.isAlive();
-//	}
-
 	public static String getAppLanguage() {
-		if (appLanguage == null) throw new NullPointerException("Class not initialized! ");
-		else return appLanguage;
+		return requireDefault().getLanguage();
+	}
+	
+	/**
+	 * @return the language tag of the language this localization loaded
+	 */
+	public String getLanguage() {
+		return appLanguage;
+	}
+	
+	/**
+	 * Start watching the language folder, and load the language files again when they are created, changed or 
+	 * deleted. The reload happens on a background thread, lookups keep using the previous Strings until it is 
+	 * done. Calling this again while watching has no effect. 
+	 * 
+	 * @throws IOException if the folder cannot be watched
+	 */
+	public synchronized void watch() throws IOException {
+		if (resources != null)
+			throw new IllegalStateException("Language files on the class path cannot be watched");
+		if (watcher == null)
+			watcher = new LanguageWatcher(this, new File(langFolder).toPath(), langExtension);
+	}
+	
+	/**
+	 * Stop watching the language folder for changes. 
+	 */
+	public synchronized void stopWatching() {
+		if (watcher != null) {
+			watcher.close();
+			watcher = null;
+		}
+	}
+	
+	/**
+	 * Load the given language files again, or all of them if "changed" is null, and publish the result. 
+	 * Files that were deleted are dropped, except the one of the application language, which keeps its last Strings. 
+	 */
+	synchronized void reload(Set<String> changed) {
+		String[] langFiles = new File(langFolder).list((dir, name) -> name.endsWith(langExtension));
+		if (langFiles == null) {
+			System.out.println("[WARNING] Unable to locate folder: " + langFolder);
+			return;
+		}
+
+		Snapshot old = snapshot;
+		String active = tag(appLanguage);
+		Map<String, Table> tables = new HashMap<>(old.tables);
+		Set<String> present = new HashSet<>();
+		for (String file : langFiles) {
+			if (!file.endsWith(langExtension))
+				continue;
+			String language = tag(file.substring(0, file.length() - langExtension.length()));
+			present.add(language);
+			Table previous = tables.get(language);
+			if (changed != null && !changed.contains(file) && previous != null)
+				continue;
+			// languages already in use are read now, so the new snapshot never has to wait for them
+			Table table = new Table(file, () -> read(file));
+			if (language.equals(active) || previous == null || previous.isLoaded()) {
+				try {
+					table.load();
+				} catch (IOException | IllegalArgumentException e) {
+					// possibly half written, keep the previous Strings until the next change
+					System.out.println("[WARNING] Unable to reload language file " + langFolder + file + ": " + e.toString());
+					if (previous != null)
+						continue;
+				}
+			}
+			tables.put(language, table);
+		}
+		tables.keySet().removeIf(language -> !present.contains(language) && !language.equals(active));
+
+		snapshot = new Snapshot(langFiles, tables);
+	}
+	
+	private static Localization requireDefault() {
+		Localization localization = defaultInstance;
+		if (localization == null) throw new NullPointerException("Class not initialized! ");
+		else return localization;
+	}
+	
+	/**
+	 * Return the Strings of a locale and its fallbacks, from the most to the least specific, reading them the first 
+	 * time the locale is used. The tables are kept as they are rather than merged into one, so a compiled table only 
+	 * decodes the Strings that are looked up. 
+	 */
+	private List<Map<String, String>> resolve(Snapshot snapshot, Locale locale) {
+		List<Map<String, String>> resolved = snapshot.resolved.get(locale);
+		if (resolved != null)
+			return resolved;
+
+		List<Map<String, String>> chain = new ArrayList<>();
+		boolean complete = true;
+		for (Table table : chain(snapshot, locale)) {
+			Map<String, String> entries = table.tryLoad();
+			if (entries == null)
+				complete = false;
+			else
+				chain.add(entries);
+		}
+		resolved = List.copyOf(chain);
+		if (!complete) {
+			// not cached, so the missing language is read again on the next lookup
+			return resolved;
+		}
+		List<Map<String, String>> previous = snapshot.resolved.putIfAbsent(locale, resolved);
+		return previous == null ? resolved : previous;
+	}
+	
+	/**
+	 * Return the tables of a locale and its fallbacks that exist, from the most to the least specific. 
+	 */
+	private List<Table> chain(Snapshot snapshot, Locale locale) {
+		List<Locale> candidates = new ArrayList<>(Localization.candidates.getCandidateLocales("", locale));
+		candidates.add(Locale.forLanguageTag(defaultLanguage));
+
+		List<Table> chain = new ArrayList<>();
+		for (Locale candidate : candidates) {
+			Table fallback = snapshot.tables.get(candidate.toLanguageTag());
+			// the default language can also be one of the candidates
+			if (fallback != null && !chain.contains(fallback))
+				chain.add(fallback);
+		}
+		return chain;
+	}
+	
+	/**
+	 * Return the String of the first table in the chain that has the key, or null if none has it. 
+	 */
+	private static String find(List<Map<String, String>> chain, String key) {
+		for (Map<String, String> table : chain) {
+			String value = table.get(key);
+			if (value != null)
+				return value;
+		}
+		return null;
+	}
+	
+	/**
+	 * Normalize a language tag or file name, so that "en-US" and "en_US" name the same language. 
+	 */
+	private static String tag(String language) {
+		return Locale.forLanguageTag(language.replace('_', '-')).toLanguageTag();
+	}
+	
+	/**
+	 * Write the index of a folder of language files ("languages.index"), which lists the language files so that 
+	 * "fromClasspath" finds them without scanning the class path. Run this when building the application, on the 
+	 * folder that is packaged. 
+	 * 
+	 * @param langFolder a String with the location of the folder containing all the localization files
+	 * @param fileSuffix a String with the file suffix of the localization files, including the "." (for example: ".lang")
+	 * @throws IOException if the index cannot be written
+	 */
+	public static void writeIndex(String langFolder, String fileSuffix) throws IOException {
+		String[] files = new File(langFolder).list((dir, name) -> name.endsWith(fileSuffix));
+		if (files == null)
+			throw new IllegalArgumentException("Unable to locate folder: " + langFolder);
+		Arrays.sort(files);
+		Files.write(new File(langFolder, INDEX_NAME).toPath(), Arrays.asList(files), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Read the language file with the given name from the folder or the class path. 
+	 */
+	private Map<String, String> read(String name) throws IOException {
+		if (resources == null)
+			return load(new File(langFolder + name));
+
+		try (InputStream in = resources.getResourceAsStream(langFolder + name)) {
+			if (in == null)
+				throw new FileNotFoundException(langFolder + name);
+			// one bulk read, then parsing from memory
+			return parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+	}
+	
+	/**
+	 * Read the names of the language files listed in the index of a folder on the class path, or null if there is 
+	 * no index. 
+	 */
+	private static String[] readIndex(ClassLoader resources, String folder) {
+		try (InputStream in = resources.getResourceAsStream(folder + INDEX_NAME)) {
+			if (in == null)
+				return null;
+			List<String> files = new ArrayList<>();
+			for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\\R")) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#"))
+					files.add(line);
+			}
+			return files.toArray(new String[0]);
+		} catch (IOException e) {
+			System.out.println("[WARNING] Unable to read language index " + folder + INDEX_NAME + ": " + e.toString());
+			return null;
+		}
+	}
+	
+	/**
+	 * Compile every language file in a folder into a binary table next to it ("en-US.lang" into "en-US.lang.bin"). 
+	 * Run this when building the application or on its first start: from then on, the tables are memory-mapped 
+	 * instead of parsing the language files, and a table is compiled again when its language file is newer. 
+	 * 
+	 * @param langFolder a String with the location of the folder containing all the localization files
+	 * @param fileSuffix a String with the file suffix of the localization files, including the "." (for example: ".lang")
+	 * @throws IOException if a language file cannot be read or a table cannot be written
+	 */
+	public static void compile(String langFolder, String fileSuffix) throws IOException {
+		File[] files = new File(langFolder).listFiles((dir, name) -> name.endsWith(fileSuffix));
+		if (files == null)
+			throw new IllegalArgumentException("Unable to locate folder: " + langFolder);
+		for (File file : files) {
+			long size = file.length();
+			long modified = file.lastModified();
+			CompiledBundle.compile(parse(file), new File(file.getPath() + CompiledBundle.EXTENSION), size, modified);
+		}
+	}
+	
+	/**
+	 * Read a language file, from its compiled table if there is one. A table compiled from a different size or 
+	 * modification time of the language file is compiled again, and if that fails the language file is parsed. 
+	 */
+	private static Map<String, String> load(File file) throws IOException {
+		File compiled = new File(file.getPath() + CompiledBundle.EXTENSION);
+		if (!compiled.isFile())
+			return parse(file);
+		if (!file.isFile())
+			throw new FileNotFoundException(file.getPath());
+
+		long size = file.length();
+		long modified = file.lastModified();
+		try {
+			CompiledBundle bundle = CompiledBundle.open(compiled);
+			if (bundle.isCompiledFrom(size, modified))
+				return bundle;
+		} catch (IOException e) {
+			System.out.println("[WARNING] Unable to read compiled language file " + compiled + ": " + e.toString());
+		}
+		Map<String, String> entries = parse(file);
+		try {
+			CompiledBundle.compile(entries, compiled, size, modified);
+		} catch (IOException e) {
+			System.out.println("[WARNING] Unable to compile language file " + file + ": " + e.toString());
+		}
+		return entries;
+	}
+	
+	private static Map<String, String> parse(File file) throws IOException {
+		try (InputStreamReader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			Properties properties = new Properties();
+			properties.load(reader);
+			return freeze(properties);
+		}
+	}
+	
+	private static Map<String, String> parse(String content) throws IOException {
+		Properties properties = new Properties();
+		properties.load(new StringReader(content));
+		return freeze(properties);
+	}
+	
+	/**
+	 * Copy the loaded entries into an immutable map, which can be read by any number of threads without locking. 
+	 */
+	private static Map<String, String> freeze(Properties properties) {
+		Map<String, String> map = new HashMap<>(properties.size() * 4 / 3 + 1);
+		for (String key : properties.stringPropertyNames())
+			map.put(key, properties.getProperty(key));
+		return Map.copyOf(map);
+	}
+	
+	/**
+	 * The loaded Strings of every language at one point in time. A reload builds a new snapshot and replaces the 
+	 * old one, it is never modified. 
+	 */
+	private static final class Snapshot {
+		
+		final String[] langFiles;
+		final Map<String, Table> tables;
+		final Map<Locale, List<Map<String, String>>> resolved = new ConcurrentHashMap<>();
+		final Map<Locale, Map<String, MessageTemplate>> localeTemplates = new ConcurrentHashMap<>();
+		
+		Snapshot(String[] langFiles, Map<String, Table> tables) {
+			this.langFiles = langFiles;
+			this.tables = Map.copyOf(tables);
+		}
+	}
+	
+	/**
+	 * The Strings of one language, read from its file the first time they are needed. A failed read is not kept, 
+	 * the file is read again the next time. 
+	 */
+	private static final class Table {
+		
+		private final String name;
+		private final Loader loader;
+		private volatile Map<String, String> entries;
+		
+		Table(String name, Map<String, String> entries) {
+			this.name = name;
+			this.loader = null;
+			this.entries = entries;
+		}
+		
+		Table(String name, Loader loader) {
+			this.name = name;
+			this.loader = loader;
+		}
+		
+		boolean isLoaded() {
+			return entries != null;
+		}
+		
+		/**
+		 * Return the Strings, reading them if they were not read yet. 
+		 */
+		Map<String, String> load() throws IOException {
+			Map<String, String> loaded = entries;
+			if (loaded == null) {
+				synchronized (this) {
+					loaded = entries;
+					if (loaded == null)
+						entries = loaded = loader.load();
+				}
+			}
+			return loaded;
+		}
+		
+		/**
+		 * Return the Strings, reading them if they were not read yet, or null if they cannot be read. 
+		 */
+		Map<String, String> tryLoad() {
+			try {
+				return load();
+			} catch (IOException | IllegalArgumentException e) {
+				System.out.println("[WARNING] Unable to load language file " + name + ": " + e.toString());
+				return null;
+			}
+		}
+	}
+	
+	private interface Loader {
+		
+		Map<String, String> load() throws IOException;
 	}
 	
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.util;
+
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A message pattern in the {@link MessageFormat} syntax, parsed once so it can be formatted any number of times from 
+ * any thread. 
+ * <p>
+ * Patterns that only use plain placeholders such as "{0}" are split into literal text and argument indices, and 
+ * formatted into a reused per-thread builder with per-thread number and date formats, the same way 
+ * {@link MessageFormat} formats them. Patterns with format types such as "{0,number,#.##}" or "{0,choice,...}" 
+ * are formatted with a copy of a parsed {@link MessageFormat}. 
+ */
+final class MessageTemplate {
+	
+	private static final int MAX_BUILDER_CAPACITY = 8 * 1024;
+	private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+	
+	private final Locale locale;
+	/**
+	 * Literal text and argument indices in order, null if the pattern needs a MessageFormat. 
+	 */
+	private final Object[] parts;
+	private final MessageFormat format;
+	private final String pattern;
+	
+	private MessageTemplate(Locale locale, Object[] parts, MessageFormat format, String pattern) {
+		this.locale = locale;
+		this.parts = parts;
+		this.format = format;
+		this.pattern = pattern;
+	}
+	
+	static MessageTemplate compile(String pattern, Locale locale) {
+		Object[] parts = parse(pattern);
+		if (parts != null)
+			return new MessageTemplate(locale, parts, null, pattern);
+		try {
+			return new MessageTemplate(locale, null, new MessageFormat(pattern, locale), pattern);
+		} catch (IllegalArgumentException e) {
+			// not a valid pattern, it is returned as it is
+			return new MessageTemplate(locale, new Object[] { pattern }, null, pattern);
+		}
+	}
+	
+	String format(Object... args) {
+		if (parts == null)
+			return ((MessageFormat) format.clone()).format(args);
+		
+		Scratch thread = scratch.get();
+		StringBuilder builder = thread.builder;
+		builder.setLength(0);
+		for (Object part : parts) {
+			if (part instanceof String) {
+				builder.append((String) part);
+			} else {
+				int index = (Integer) part;
+				if (args == null || index >= args.length) {
+					builder.append('{').append(index).append('}');
+				} else {
+					Object arg = args[index];
+					if (arg == null)
+						builder.append("null");
+					else if (arg instanceof Number)
+						builder.append(thread.number(locale).format(arg));
+					else if (arg instanceof Date)
+						builder.append(thread.date(locale).format(arg));
+					else if (arg instanceof String)
+						builder.append((String) arg);
+					else
+						builder.append(arg.toString());
+				}
+			}
+		}
+		String result = builder.toString();
+		if (builder.capacity() > MAX_BUILDER_CAPACITY)
+			thread.builder = new StringBuilder();
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		return pattern;
+	}
+	
+	/**
+	 * Split a pattern into literal text and argument indices, following the quoting rules of MessageFormat. Returns 
+	 * null if the pattern has placeholders with a format type, or is not valid. 
+	 */
+	private static Object[] parse(String pattern) {
+		List<Object> parts = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		boolean quoted = false;
+		int length = pattern.length();
+		for (int i = 0; i < length; i++) {
+			char c = pattern.charAt(i);
+			if (c == '\'') {
+				if (i + 1 < length && pattern.charAt(i + 1) == '\'') {
+					literal.append('\'');
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if (c == '{' && !quoted) {
+				int end = pattern.indexOf('}', i);
+				if (end < 0)
+					return null;
+				int index = 0;
+				for (int j = i + 1; j < end; j++) {
+					char digit = pattern.charAt(j);
+					if (digit < '0' || digit > '9' || index > 999)
+						return null;
+					index = index * 10 + (digit - '0');
+				}
+				if (end == i + 1)
+					return null;
+				if (literal.length() > 0) {
+					parts.add(literal.toString());
+					literal.setLength(0);
+				}
+				parts.add(index);
+				i = end;
+			} else if (c == '}' && !quoted) {
+				return null;
+			} else {
+				literal.append(c);
+			}
+		}
+		if (literal.length() > 0)
+			parts.add(literal.toString());
+		return parts.toArray();
+	}
+	
+	/**
+	 * The builder and formats one thread reuses for every template. 
+	 */
+	private static final class Scratch {
+		
+		StringBuilder builder = new StringBuilder();
+		private final Map<Locale, NumberFormat> numbers = new HashMap<>();
+		private final Map<Locale, DateFormat> dates = new HashMap<>();
+		
+		NumberFormat number(Locale locale) {
+			return numbers.computeIfAbsent(locale, NumberFormat::getInstance);
+		}
+		
+		DateFormat date(Locale locale) {
+			return dates.computeIfAbsent(locale, l -> DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, l));
+		}
+	}
+	
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class RangedDownloadTest {
+
+    private static final byte[] BODY = new byte[(int) (3 * RangedDownload.MIN_RANGE_SIZE + 12345)];
+
+    static {
+        new Random(42).nextBytes(BODY);
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ranged", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(String.valueOf(range));
+            if (range == null) {
+                respond(exchange, 200, BODY, 0, BODY.length, BODY.length);
+                return;
+            }
+            // bytes=first-last
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int first = Integer.parseInt(bounds[0]);
+            int last = bounds.length > 1 ? Integer.parseInt(bounds[1]) : BODY.length - 1;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + BODY.length);
+            respond(exchange, 206, BODY, first, last + 1, last + 1 - first);
+        });
+        server.createContext("/unranged", exchange -> {
+            ranges.add(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+            respond(exchange, 200, BODY, 0, BODY.length, BODY.length);
+        });
+        server.createContext("/short", exchange -> respond(exchange, 200, BODY, 0, 1000, 1_000_000));
+        server.createContext("/short-range", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range == null) {
+                respond(exchange, 200, BODY, 0, BODY.length, BODY.length);
+                return;
+            }
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int first = Integer.parseInt(bounds[0]);
+            int last = Integer.parseInt(bounds[1]);
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + BODY.length);
+            // every range but the probe is cut off after 1000 bytes
+            respond(exchange, 206, BODY, first, Math.min(last + 1, first + 1000), last + 1 - first);
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testRangedDownload() throws IOException {
+        File target = folder.newFile("ranged.bin");
+        DownloadResult result = Files.download(url("/ranged"), target, 4);
+
+        assertEquals(BODY.length, result.getBytes());
+        assertArrayEquals(BODY, java.nio.file.Files.readAllBytes(target.toPath()));
+        // the probe and one request per range
+        assertEquals("bytes=0-0", ranges.get(0));
+        assertEquals(4, ranges.size());
+    }
+
+    @Test
+    public void testFallbackWhenRangeIgnored() throws IOException {
+        File target = folder.newFile("unranged.bin");
+        DownloadResult result = Files.download(url("/unranged"), target, 4);
+
+        assertEquals(BODY.length, result.getBytes());
+        assertArrayEquals(BODY, java.nio.file.Files.readAllBytes(target.toPath()));
+        // the 200 answer to the probe is the whole file, nothing else is requested
+        assertEquals(1, ranges.size());
+    }
+
+    @Test
+    public void testShortBodyKeepsTarget() throws IOException {
+        File target = folder.newFile("short.bin");
+        byte[] old = "old".getBytes(StandardCharsets.UTF_8);
+        java.nio.file.Files.write(target.toPath(), old);
+
+        try {
+            Files.download(url("/short"), target);
+            fail("a body shorter than its Content-Length must fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("1000000"));
+        }
+        assertArrayEquals(old, java.nio.file.Files.readAllBytes(target.toPath()));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testShortRangeKeepsTarget() throws IOException {
+        File target = folder.newFile("short-range.bin");
+        byte[] old = "old".getBytes(StandardCharsets.UTF_8);
+        java.nio.file.Files.write(target.toPath(), old);
+
+        try {
+            Files.download(url("/short-range"), target, 4);
+            fail("a range shorter than requested must fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Incomplete range"));
+        }
+        assertArrayEquals(old, java.nio.file.Files.readAllBytes(target.toPath()));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Send {@code body[from, to)} while declaring a content length of {@code declared}, closing the connection
+     * early if fewer bytes than declared are sent.
+     */
+    static void respond(HttpExchange exchange, int status, byte[] body, int from, int to, long declared) throws IOException {
+        exchange.sendResponseHeaders(status, declared);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body, from, to - from);
+        out.flush();
+        // closes the connection instead of waiting for the rest of a response shorter than declared
+        exchange.close();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 Siyuan "Jerry" Zhang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.jerry.commons.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class ResumableDownloadTest {
+
+    private static final byte[] BODY = new byte[100_000];
+
+    static {
+        new Random(7).nextBytes(BODY);
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/file", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(String.valueOf(range));
+            if (range == null) {
+                RangedDownloadTest.respond(exchange, 200, BODY, 0, BODY.length, BODY.length);
+                return;
+            }
+            // bytes=first-
+            int first = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+            if (first >= BODY.length) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + BODY.length);
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + (BODY.length - 1) + "/" + BODY.length);
+            RangedDownloadTest.respond(exchange, 206, BODY, first, BODY.length, BODY.length - first);
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        File target = new File(folder.getRoot(), "file.bin");
+        int offset = 40_000;
+        writePart(target, Arrays.copyOf(BODY, offset), BODY.length);
+
+        DownloadResult result = Files.downloadResumable(url(), target, BODY.length, null);
+
+        assertEquals(Arrays.asList("bytes=" + offset + "-"), ranges);
+        assertEquals(BODY.length, result.getBytes());
+        assertArrayEquals(BODY, java.nio.file.Files.readAllBytes(target.toPath()));
+        assertNoLeftovers(target);
+    }
+
+    @Test
+    public void testCompletePartAnswered416() throws IOException {
+        File target = new File(folder.getRoot(), "file.bin");
+        writePart(target, BODY, BODY.length);
+
+        Files.downloadResumable(url(), target);
+
+        assertEquals(Arrays.asList("bytes=" + BODY.length + "-"), ranges);
+        assertArrayEquals(BODY, java.nio.file.Files.readAllBytes(target.toPath()));
+        assertNoLeftovers(target);
+    }
+
+    @Test
+    public void testStalePartAnswered416() throws IOException {
+        File target = new File(folder.getRoot(), "file.bin");
+        // a part file longer than the resource now is, recorded against a different length
+        byte[] stale = new byte[BODY.length + 5000];
+        writePart(target, stale, stale.length + 1);
+
+        Files.downloadResumable(url(), target);
+
+        assertEquals(Arrays.asList("bytes=" + stale.length + "-", "null"), ranges);
+        assertArrayEquals(BODY, java.nio.file.Files.readAllBytes(target.toPath()));
+        assertNoLeftovers(target);
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/file";
+    }
+
+    private void writePart(File target, byte[] content, long length) throws IOException {
+        java.nio.file.Files.write(new File(target.getPath() + ".part").toPath(), content);
+        Properties state = new Properties();
+        state.setProperty("url", url());
+        state.setProperty("length", Long.toString(length));
+        state.setProperty("offset", Integer.toString(content.length));
+        try (Writer writer = java.nio.file.Files.newBufferedWriter(new File(target.getPath() + ".part.meta").toPath(), StandardCharsets.UTF_8)) {
+            state.store(writer, null);
+        }
+    }
+
+    private static void assertNoLeftovers(File target) {
+        assertFalse(new File(target.getPath() + ".part").exists());
+        assertFalse(new File(target.getPath() + ".part.meta").exists());
+    }
+}